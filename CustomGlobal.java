@@ -37,15 +37,17 @@
 package projects.mutualExclusion;
 
 
-import java.util.Iterator;
+import java.io.IOException;
 
 import javax.swing.JOptionPane;
 
-import projects.mutualExclusion.nodes.nodeImplementations.SandersNode;
-import sinalgo.nodes.Node;
+import projects.mutualExclusion.nodes.nodeImplementations.MutexNode.State;
+import sinalgo.configuration.Configuration;
+import sinalgo.configuration.CorruptConfigurationEntryException;
 import sinalgo.runtime.AbstractCustomGlobal;
+import sinalgo.runtime.Global;
+import sinalgo.tools.Tools;
 import sinalgo.tools.logging.Logging;
-import sinalgo.runtime.Runtime;
 
 /**
  * This class holds customized global state and methods for the framework. 
@@ -70,54 +72,166 @@ import sinalgo.runtime.Runtime;
  */
 public class CustomGlobal extends AbstractCustomGlobal{
 	
-	Logging log = Logging.getLogger("mutualexclusion.csv");
+	/** The CSV log, null if disabled with MutualExclusion/Metrics/CSV. */
+	Logging log = null;
+	
+	/** The binary metrics file, null if MutualExclusion/Metrics/BinaryFile is not set. */
+	MetricsFile metrics = null;
+	
+	/** The simulation stops after this many rounds, 0 for no limit. */
+	int maxRounds = 0;
+	
+	/** The simulation stops after this many CS entries, 0 for no limit. */
+	long maxCSEntries = 0;
+	
+	/** In asynchronous mode: the events handled and the longest event queue seen. */
+	long events = 0;
+	int maxEventQueue = 0;
+	
+	/** The wall-clock time the simulation started, for the events per second. */
+	long startNanos;
 	
 	/* (non-Javadoc)
 	 * @see runtime.AbstractCustomGlobal#hasTerminated()
 	 */
 	public boolean hasTerminated() {
-		return false;
+		return (maxRounds > 0 && round >= maxRounds) ||
+			   (maxCSEntries > 0 && Statistics.csEntries() >= maxCSEntries);
 	}
 
 	int round = 0;
 	
 	@Override
 	public void preRun() {
-		log.logln("round,not_in_cs,waiting,in_cs,messages,reliquishs");
+		startNanos = System.nanoTime();
+		// parse the workload parameters before the first node needs them
+		Workload.get();
+		InvariantChecker.init();
+		try {
+			if (Configuration.hasParameter("MutualExclusion/Termination/Rounds")) {
+				maxRounds = Configuration.getIntegerParameter("MutualExclusion/Termination/Rounds");
+			}
+			if (Configuration.hasParameter("MutualExclusion/Termination/CSEntries")) {
+				maxCSEntries = Configuration.getLongParameter("MutualExclusion/Termination/CSEntries");
+			}
+			if (!Configuration.hasParameter("MutualExclusion/Metrics/CSV") ||
+				Configuration.getBooleanParameter("MutualExclusion/Metrics/CSV")) {
+				log = Logging.getLogger("mutualexclusion.csv");
+				log.logln("round,not_in_cs,waiting,in_cs,messages,reliquishs");
+			}
+			if (Configuration.hasParameter("MutualExclusion/Metrics/BinaryFile")) {
+				metrics = new MetricsFile(Configuration.getStringParameter("MutualExclusion/Metrics/BinaryFile"));
+			}
+		} catch (CorruptConfigurationEntryException e) {
+			Tools.fatalError(e.getMessage());
+		} catch (IOException e) {
+			Tools.fatalError("Cannot create the metrics file: " + e.getMessage());
+		}
 	}
 	
+	/**
+	 * Executes the round of the ParallelSandersNodes, if there are any.
+	 */
+	@Override
+	public void preRound() {
+		ParallelRounds.preRound();
+	}
+	
+	/**
+	 * Called after every round, in asynchronous mode after every event. There,
+	 * a round is a time unit and ends with the first event after it.
+	 */
 	@Override
 	public void postRound() {
-		int messages = 0;
-		int reliquishs = 0;
-
-		int stateNotInCSCount = 0;
-		int stateWaitingCount = 0;
-		int stateInCSCount = 0;		
-		
-		Iterator<Node> nodeIter = Runtime.nodes.iterator();
-		while(nodeIter.hasNext()){
-			SandersNode n = (SandersNode) nodeIter.next();		
-			messages += n.messageCount;
-			reliquishs += n.reliquishMessageCount;
-			switch (n.state) {
-				case NOT_IN_CS:
-					stateNotInCSCount += 1;
-					break;
-				case WAITING:
-					stateWaitingCount += 1;
-					break;
-				case IN_CS:
-					stateInCSCount += 1;
-					break;
+		if (Global.isAsynchronousMode) {
+			events++;
+			int queued = Tools.getEventQueue().size();
+			if (queued > maxEventQueue) {
+				maxEventQueue = queued;
 			}
+			if (Global.currentTime < round + 1) {
+				return;
+			}
+		}
+		Statistics.endRound();
+		InvariantChecker.endRound();
+		if (log != null) {
+			log.logln("" + round +
+					  "," + Statistics.count(State.NOT_IN_CS) +
+					  "," + Statistics.count(State.WAITING) +				  
+					  "," + Statistics.count(State.IN_CS) +
+					  "," + Statistics.messages() + "," + Statistics.relinquishs());
+		}
+		if (metrics != null) {
+			try {
+				metrics.append(round,
+						Statistics.count(State.NOT_IN_CS),
+						Statistics.count(State.WAITING),
+						Statistics.count(State.IN_CS),
+						Statistics.messages(), Statistics.relinquishs(), Statistics.csEntries());
+			} catch (IOException e) {
+				Tools.fatalError("Cannot write the metrics file: " + e.getMessage());
+			}
+		}
+		round = Global.isAsynchronousMode ? (int) Global.currentTime : round + 1;
+	}
+	
+	/**
+	 * @return The latency percentiles, one line per metric.
+	 */
+	private String latencySummary() {
+		return "waiting time: " + Statistics.waitingTime().summary() + "\n" +
+			   "hold time: " + Statistics.holdTime().summary() + "\n" +
+			   "relinquishs per request: " + Statistics.relinquishsPerRequest().summary() + "\n" +
+			   "relinquishs / requests: " + ((double) Statistics.relinquishs() / Math.max(1, Statistics.requests())) + "\n" +
+			   "synchronization delay: " + Statistics.synchronizationDelay().summary() + "\n" +
+			   "CS entries / round: " + ((double) Statistics.csEntries() / Math.max(1, round)) + "\n" +
+			   "messages / CS entry: " + ((double) Statistics.messages() / Math.max(1, Statistics.csEntries())) + "\n" +
+			   "coalesced messages: " + Statistics.coalesced() +
+			   (Workload.get().resources() > 1 ?
+			    "\nlocks: " + Workload.get().resources() + ", share of the most popular lock: " +
+			    ((double) Statistics.lockEntries(0) / Math.max(1, Statistics.csEntries())) : "") +
+			   (Statistics.sharedEntries() > 0 ?
+			    "\nshared CS entries: " + Statistics.sharedEntries() : "") +
+			   (Statistics.reusedEntries() > 0 || Statistics.lazyInquiries() > 0 ?
+			    "\nCS entries with kept votes: " + Statistics.reusedEntries() +
+			    "\nmessages saved: " + Statistics.savedMessages() + ", lazy inquiries: " + Statistics.lazyInquiries() +
+			    ", net: " + (Statistics.savedMessages() - Statistics.lazyInquiries()) +
+			    "\nwait for kept votes: " + Statistics.keptVoteDelay().summary() : "") +
+			   (Statistics.dropped() > 0 || Statistics.recoveryMessages() > 0 ?
+			    "\ndropped messages: " + Statistics.dropped() +
+			    "\nrecovery messages / messages: " + ((double) Statistics.recoveryMessages() / Math.max(1, Statistics.messages())) +
+			    "\nrecovery time: " + Statistics.recoveryTime().summary() : "") +
+			   (Global.isAsynchronousMode ?
+			    "\nevents: " + events + ", events / s: " + (long) (events / Math.max(1e-9, (System.nanoTime() - startNanos) / 1e9)) +
+			    "\nevent queue: " + Tools.getEventQueue().size() + ", max " + maxEventQueue : "");
+	}
+	
+	@Override
+	public void onExit() {
+		Logging.getLogger("latency.txt").logln(latencySummary());
+		ParallelRounds.shutdown();
+		try {
+			Workload.get().close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		if (metrics != null) {
+			try {
+				metrics.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			metrics = null;
 		}
-		log.logln("" + round +
-				  "," + stateNotInCSCount +
-				  "," + stateWaitingCount +				  
-				  "," + stateInCSCount +
-				  "," + messages + "," + reliquishs);
-		round += 1;
+	}
+	
+	/**
+	 * Shows the latency percentiles up to the last round.
+	 */
+	@AbstractCustomGlobal.GlobalMethod(menuText="Latency")
+	public void showLatency() {
+		JOptionPane.showMessageDialog(null, latencySummary(), "Latency", JOptionPane.INFORMATION_MESSAGE);
 	}
 	
 	/**
@@ -0,0 +1,273 @@
+/*
+ Copyright (c) 2007, Distributed Computing Group (DCG)
+                    ETH Zurich
+                    Switzerland
+                    dcg.ethz.ch
+
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ - Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+ - Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the
+   distribution.
+
+ - Neither the name 'Sinalgo' nor the names of its contributors may be
+   used to endorse or promote products derived from this software
+   without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package projects.mutualExclusion;
+
+import java.util.Arrays;
+
+import projects.mutualExclusion.nodes.nodeImplementations.MutexNode;
+import projects.mutualExclusion.nodes.nodeImplementations.MutexNode.State;
+import projects.mutualExclusion.nodes.nodeImplementations.NodeTable;
+import sinalgo.configuration.Configuration;
+import sinalgo.configuration.CorruptConfigurationEntryException;
+import sinalgo.runtime.Global;
+import sinalgo.tools.Tools;
+
+/**
+ * Checks mutual exclusion and starvation freedom while the simulation runs.
+ * <p>
+ * The nodes report every change of their state, from which the checker keeps
+ * the holders of every lock and the waiting nodes in the order of their
+ * requests. Each transition costs constant time, and the oldest waiter is
+ * found in amortized constant time at the end of a round, so the checks stay
+ * on for large networks. A violation stops the simulation with a dump of the
+ * nodes involved.
+ * <p>
+ * A lock may be held by one exclusive holder or by any number of shared
+ * holders. A node must not wait longer than MutualExclusion/Check/StarvationBound
+ * rounds (0: no bound).
+ */
+public class InvariantChecker {
+
+	/** The holders of every lock, by lock. */
+	private static int[][] holders = new int[1][4];
+	private static int[] holderCount = new int[1];
+	/** The number of exclusive holders, by lock. */
+	private static int[] exclusiveCount = new int[1];
+	/** The lock a node holds and its index in the holders of the lock, by ID. */
+	private static int[] heldLock = new int[16];
+	private static int[] holderIndex = new int[16];
+
+	/** The time a node requested the CS, NaN if it does not wait, by ID. */
+	private static double[] waitingSince = new double[16];
+	/** The waiting nodes in the order of their requests, as a ring buffer. */
+	private static int[] waitingIds = new int[16];
+	private static double[] waitingTimes = new double[16];
+	private static int waitingHead = 0;
+	private static int waitingSize = 0;
+
+	private static double starvationBound = 0;
+
+	/**
+	 * Reads the configuration and forgets all nodes. Call before the first
+	 * node is added.
+	 */
+	public static void init() {
+		holders = new int[1][4];
+		holderCount = new int[1];
+		exclusiveCount = new int[1];
+		heldLock = new int[16];
+		holderIndex = new int[16];
+		waitingSince = new double[16];
+		Arrays.fill(waitingSince, Double.NaN);
+		waitingIds = new int[16];
+		waitingTimes = new double[16];
+		waitingHead = 0;
+		waitingSize = 0;
+		starvationBound = 0;
+		try {
+			if (Configuration.hasParameter("MutualExclusion/Check/StarvationBound")) {
+				starvationBound = Configuration.getDoubleParameter("MutualExclusion/Check/StarvationBound");
+			}
+		} catch (CorruptConfigurationEntryException e) {
+			Tools.fatalError(e.getMessage());
+		}
+	}
+
+	/**
+	 * Records that a node changed its state. The node's resource and shared
+	 * fields describe the request the transition belongs to.
+	 */
+	public static void stateChanged(MutexNode node, State from, State to) {
+		if (node.ID >= waitingSince.length) {
+			grow(node.ID);
+		}
+		if (from == State.WAITING) {
+			// the entry in the ring buffer is dropped lazily, see compactWaiters()
+			waitingSince[node.ID] = Double.NaN;
+		} else if (from == State.IN_CS) {
+			removeHolder(node);
+		}
+		if (to == State.WAITING) {
+			addWaiter(node.ID, Global.currentTime);
+		} else if (to == State.IN_CS) {
+			addHolder(node);
+		}
+	}
+
+	/**
+	 * Checks the starvation bound. Call once per round.
+	 */
+	public static void endRound() {
+		if (starvationBound <= 0) {
+			return;
+		}
+		int oldest = oldestWaiter();
+		if (oldest > 0 && Global.currentTime - waitingSince[oldest] > starvationBound) {
+			Tools.fatalError("Starvation: node " + oldest + " waits since " + waitingSince[oldest] +
+					", longer than " + starvationBound + " rounds at time " + Global.currentTime + "\n" +
+					NodeTable.get(oldest) + "\n" + dump(((MutexNode) NodeTable.get(oldest)).resource));
+		}
+	}
+
+	/**
+	 * @return The ID of the node that waits the longest, 0 if no node waits.
+	 */
+	public static int oldestWaiter() {
+		while (waitingSize > 0) {
+			int id = waitingIds[waitingHead];
+			if (waitingSince[id] == waitingTimes[waitingHead]) {
+				return id;
+			}
+			waitingHead = (waitingHead + 1) % waitingIds.length;
+			waitingSize--;
+		}
+		return 0;
+	}
+
+	/**
+	 * @return The number of nodes in the CS of the given lock.
+	 */
+	public static int holders(int lock) {
+		return lock < holderCount.length ? holderCount[lock] : 0;
+	}
+
+	private static void addWaiter(int id, double time) {
+		waitingSince[id] = time;
+		if (waitingSize == waitingIds.length) {
+			compactWaiters();
+		}
+		int tail = (waitingHead + waitingSize) % waitingIds.length;
+		waitingIds[tail] = id;
+		waitingTimes[tail] = time;
+		waitingSize++;
+	}
+
+	/**
+	 * Drops the entries of the nodes that stopped waiting from the full ring
+	 * buffer, whether or not the starvation bound is checked, and doubles it
+	 * if more than half of the entries are still waiting.
+	 */
+	private static void compactWaiters() {
+		int live = 0;
+		for (int i = 0; i < waitingSize; i++) {
+			int j = (waitingHead + i) % waitingIds.length;
+			if (waitingSince[waitingIds[j]] == waitingTimes[j]) {
+				live++;
+			}
+		}
+		int length = live > waitingIds.length / 2 ? 2 * waitingIds.length : waitingIds.length;
+		int[] ids = new int[length];
+		double[] times = new double[length];
+		int k = 0;
+		for (int i = 0; i < waitingSize; i++) {
+			int j = (waitingHead + i) % waitingIds.length;
+			if (waitingSince[waitingIds[j]] == waitingTimes[j]) {
+				ids[k] = waitingIds[j];
+				times[k] = waitingTimes[j];
+				k++;
+			}
+		}
+		waitingIds = ids;
+		waitingTimes = times;
+		waitingHead = 0;
+		waitingSize = live;
+	}
+
+	private static void addHolder(MutexNode node) {
+		int lock = node.resource;
+		if (lock >= holderCount.length) {
+			int locks = Math.max(2 * holderCount.length, lock + 1);
+			int old = holders.length;
+			holders = Arrays.copyOf(holders, locks);
+			for (int i = old; i < locks; i++) {
+				holders[i] = new int[4];
+			}
+			holderCount = Arrays.copyOf(holderCount, locks);
+			exclusiveCount = Arrays.copyOf(exclusiveCount, locks);
+		}
+		if (exclusiveCount[lock] > 0 || (!node.shared && holderCount[lock] > 0)) {
+			Tools.fatalError("Mutual exclusion violated: node " + node.ID + " enters the " +
+					(node.shared ? "shared" : "exclusive") + " CS of lock " + lock +
+					" at time " + Global.currentTime + "\n" + node + "\n" + dump(lock));
+		}
+		if (holderCount[lock] == holders[lock].length) {
+			holders[lock] = Arrays.copyOf(holders[lock], 2 * holders[lock].length);
+		}
+		holderIndex[node.ID] = holderCount[lock];
+		heldLock[node.ID] = lock;
+		holders[lock][holderCount[lock]++] = node.ID;
+		if (!node.shared) {
+			exclusiveCount[lock]++;
+		}
+	}
+
+	private static void removeHolder(MutexNode node) {
+		int lock = heldLock[node.ID];
+		int i = holderIndex[node.ID];
+		int last = holders[lock][--holderCount[lock]];
+		holders[lock][i] = last;
+		holderIndex[last] = i;
+		if (!node.shared) {
+			exclusiveCount[lock]--;
+		}
+	}
+
+	/**
+	 * @return The holders of the lock and the oldest waiter, one node per line.
+	 */
+	private static String dump(int lock) {
+		StringBuilder s = new StringBuilder();
+		s.append("holders of lock ").append(lock).append(':');
+		for (int i = 0; i < holders(lock); i++) {
+			s.append("\n  ").append(NodeTable.get(holders[lock][i]));
+		}
+		int oldest = oldestWaiter();
+		if (oldest > 0) {
+			s.append("\noldest waiter since ").append(waitingSince[oldest]).append(":\n  ").append(NodeTable.get(oldest));
+		}
+		return s.toString();
+	}
+
+	private static void grow(int id) {
+		int length = Math.max(2 * waitingSince.length, id + 1);
+		int old = waitingSince.length;
+		waitingSince = Arrays.copyOf(waitingSince, length);
+		Arrays.fill(waitingSince, old, length, Double.NaN);
+		heldLock = Arrays.copyOf(heldLock, length);
+		holderIndex = Arrays.copyOf(holderIndex, length);
+	}
+}
@@ -0,0 +1,170 @@
+/*
+ Copyright (c) 2007, Distributed Computing Group (DCG)
+                    ETH Zurich
+                    Switzerland
+                    dcg.ethz.ch
+
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ - Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+ - Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the
+   distribution.
+
+ - Neither the name 'Sinalgo' nor the names of its contributors may be
+   used to endorse or promote products derived from this software
+   without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package projects.mutualExclusion;
+
+/**
+ * A histogram with logarithmic buckets in the style of HdrHistogram.
+ * <p>
+ * Values are stored with a resolution of 1/{@link #RESOLUTION}. Small values
+ * have a bucket each, above that every power of two is split into
+ * {@link #SUB_BUCKETS} buckets, which bounds the relative error of the
+ * reported percentiles by 1/SUB_BUCKETS. The memory is fixed and recording a
+ * value neither allocates nor depends on the number of recorded values.
+ */
+public class LatencyHistogram {
+
+	/** Values are recorded in multiples of 1/RESOLUTION. */
+	public static final int RESOLUTION = 1000;
+
+	private static final int SUB_BITS = 5;
+	private static final int SUB_BUCKETS = 1 << SUB_BITS;
+	/** Enough buckets for all non-negative longs. */
+	private static final int BUCKETS = SUB_BUCKETS + (63 - SUB_BITS) * SUB_BUCKETS;
+
+	private final long[] counts = new long[BUCKETS];
+	private long count = 0;
+	private long sum = 0;
+	private long max = 0;
+	/** The range of buckets that may be non-zero, such that reset and add skip the rest. */
+	private int lowestBucket = BUCKETS;
+	private int highestBucket = -1;
+
+	/**
+	 * Records a value. Negative values are recorded as 0.
+	 */
+	public void record(double value) {
+		long v = Math.max(0, Math.round(value * RESOLUTION));
+		int b = bucket(v);
+		counts[b]++;
+		if (b < lowestBucket) {
+			lowestBucket = b;
+		}
+		if (b > highestBucket) {
+			highestBucket = b;
+		}
+		count++;
+		sum += v;
+		if (v > max) {
+			max = v;
+		}
+	}
+
+	/**
+	 * Adds all values recorded by another histogram.
+	 */
+	public void add(LatencyHistogram other) {
+		for (int i = other.lowestBucket; i <= other.highestBucket; i++) {
+			counts[i] += other.counts[i];
+		}
+		lowestBucket = Math.min(lowestBucket, other.lowestBucket);
+		highestBucket = Math.max(highestBucket, other.highestBucket);
+		count += other.count;
+		sum += other.sum;
+		max = Math.max(max, other.max);
+	}
+
+	/**
+	 * Removes all values.
+	 */
+	public void reset() {
+		if (highestBucket >= 0) {
+			java.util.Arrays.fill(counts, lowestBucket, highestBucket + 1, 0);
+		}
+		lowestBucket = BUCKETS;
+		highestBucket = -1;
+		count = 0;
+		sum = 0;
+		max = 0;
+	}
+
+	public long count() {
+		return count;
+	}
+
+	public double mean() {
+		return count == 0 ? 0 : (double) sum / count / RESOLUTION;
+	}
+
+	public double max() {
+		return (double) max / RESOLUTION;
+	}
+
+	/**
+	 * @param p The percentile, between 0 and 100.
+	 * @return The smallest value such that p percent of the values are at most
+	 * as large (up to the bucket precision), 0 if the histogram is empty.
+	 */
+	public double percentile(double p) {
+		if (count == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(p / 100 * count));
+		long seen = 0;
+		for (int i = lowestBucket; i <= highestBucket; i++) {
+			seen += counts[i];
+			if (seen >= rank) {
+				return (double) Math.min(max, lowerBound(i + 1) - 1) / RESOLUTION;
+			}
+		}
+		return max();
+	}
+
+	/**
+	 * @return A line with the count, mean, p50, p99, p999 and max.
+	 */
+	public String summary() {
+		return String.format("count=%d mean=%.2f p50=%.2f p99=%.2f p999=%.2f max=%.2f",
+			count, mean(), percentile(50), percentile(99), percentile(99.9), max());
+	}
+
+	private static int bucket(long v) {
+		if (v < SUB_BUCKETS) {
+			return (int) v;
+		}
+		int shift = 63 - Long.numberOfLeadingZeros(v) - SUB_BITS;
+		return SUB_BUCKETS + shift * SUB_BUCKETS + (int) (v >> shift) - SUB_BUCKETS;
+	}
+
+	private static long lowerBound(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int shift = (bucket - SUB_BUCKETS) / SUB_BUCKETS;
+		int sub = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+		return (long) (SUB_BUCKETS + sub) << shift;
+	}
+}
@@ -0,0 +1,177 @@
+/*
+ Copyright (c) 2007, Distributed Computing Group (DCG)
+                    ETH Zurich
+                    Switzerland
+                    dcg.ethz.ch
+
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ - Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+ - Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the
+   distribution.
+
+ - Neither the name 'Sinalgo' nor the names of its contributors may be
+   used to endorse or promote products derived from this software
+   without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package projects.mutualExclusion;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A compact binary file with one fixed-size record of metrics per round.
+ * <p>
+ * The records are collected in a direct buffer and written through a file
+ * channel whenever the buffer is full, so logging a round costs a few puts.
+ * The file starts with a magic number and the record size. Use
+ * {@link #toCSV(String, PrintStream)} or the main method to convert it.
+ */
+public class MetricsFile {
+
+	private static final int MAGIC = 0x534d5831; // "SMX1"
+
+	/** The columns of a record, in the order they are stored. */
+	public static final String HEADER = "round,not_in_cs,waiting,in_cs,messages,reliquishs,cs_entries";
+
+	/** round, not_in_cs, waiting and in_cs as int, the counters as long. */
+	private static final int RECORD_SIZE = 4 * 4 + 3 * 8;
+
+	private final FileChannel channel;
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(RECORD_SIZE * 4096);
+
+	/**
+	 * Creates (or truncates) the file and writes its header.
+	 */
+	public MetricsFile(String fileName) throws IOException {
+		channel = new FileOutputStream(fileName).getChannel();
+		buffer.putInt(MAGIC);
+		buffer.putInt(RECORD_SIZE);
+	}
+
+	/**
+	 * Appends the record of one round.
+	 */
+	public void append(int round, int notInCS, int waiting, int inCS,
+			long messages, long relinquishs, long csEntries) throws IOException {
+		if (buffer.remaining() < RECORD_SIZE) {
+			flush();
+		}
+		buffer.putInt(round);
+		buffer.putInt(notInCS);
+		buffer.putInt(waiting);
+		buffer.putInt(inCS);
+		buffer.putLong(messages);
+		buffer.putLong(relinquishs);
+		buffer.putLong(csEntries);
+	}
+
+	private void flush() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * Writes the pending records and closes the file.
+	 */
+	public void close() throws IOException {
+		flush();
+		channel.close();
+	}
+
+	/**
+	 * Converts a metrics file to CSV.
+	 */
+	public static void toCSV(String fileName, PrintStream out) throws IOException {
+		FileChannel in = new FileInputStream(fileName).getChannel();
+		try {
+			ByteBuffer buf = ByteBuffer.allocateDirect(RECORD_SIZE * 4096);
+			buf.limit(8);
+			while (buf.hasRemaining() && in.read(buf) >= 0) {}
+			buf.flip();
+			if (buf.remaining() < 8 || buf.getInt() != MAGIC || buf.getInt() != RECORD_SIZE) {
+				throw new IOException(fileName + " is not a metrics file");
+			}
+			out.println(HEADER);
+			buf.clear();
+			StringBuilder line = new StringBuilder();
+			while (in.read(buf) >= 0) {
+				buf.flip();
+				while (buf.remaining() >= RECORD_SIZE) {
+					line.setLength(0);
+					line.append(buf.getInt()).append(',')
+						.append(buf.getInt()).append(',')
+						.append(buf.getInt()).append(',')
+						.append(buf.getInt()).append(',')
+						.append(buf.getLong()).append(',')
+						.append(buf.getLong()).append(',')
+						.append(buf.getLong());
+					out.println(line);
+				}
+				buf.compact();
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * @return The columns of the last record of a metrics file, null if the
+	 * file contains no record.
+	 */
+	public static long[] lastRecord(String fileName) throws IOException {
+		FileChannel in = new FileInputStream(fileName).getChannel();
+		try {
+			long records = (in.size() - 8) / RECORD_SIZE;
+			if (records <= 0) {
+				return null;
+			}
+			ByteBuffer buf = ByteBuffer.allocate(RECORD_SIZE);
+			long position = 8 + (records - 1) * RECORD_SIZE;
+			while (buf.hasRemaining() && in.read(buf, position + buf.position()) >= 0) {}
+			buf.flip();
+			return new long[] {buf.getInt(), buf.getInt(), buf.getInt(), buf.getInt(),
+					buf.getLong(), buf.getLong(), buf.getLong()};
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Prints the metrics file given as first argument as CSV.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 1) {
+			System.err.println("Usage: MetricsFile <metrics file>");
+			System.exit(1);
+		}
+		toCSV(args[0], System.out);
+	}
+}
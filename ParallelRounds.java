@@ -0,0 +1,452 @@
+/*
+ Copyright (c) 2007, Distributed Computing Group (DCG)
+                    ETH Zurich
+                    Switzerland
+                    dcg.ethz.ch
+
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ - Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+ - Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the
+   distribution.
+
+ - Neither the name 'Sinalgo' nor the names of its contributors may be
+   used to endorse or promote products derived from this software
+   without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package projects.mutualExclusion;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import projects.mutualExclusion.nodes.messages.RequestQueue;
+import projects.mutualExclusion.nodes.nodeImplementations.MutexNode;
+import projects.mutualExclusion.nodes.nodeImplementations.MutexNode.State;
+import projects.mutualExclusion.nodes.nodeImplementations.NodeTable;
+import projects.mutualExclusion.nodes.nodeImplementations.ParallelSandersNode;
+import sinalgo.configuration.Configuration;
+import sinalgo.configuration.CorruptConfigurationEntryException;
+import sinalgo.nodes.Node;
+import sinalgo.nodes.messages.Message;
+import sinalgo.runtime.Global;
+import sinalgo.tools.Tools;
+import sinalgo.tools.statistics.Distribution;
+
+/**
+ * Steps the ParallelSandersNodes of a synchronous simulation on several
+ * threads, called in preRound before the framework steps the nodes (which
+ * then do nothing).
+ * <p>
+ * The nodes are split into partitions of consecutive IDs, and a round steps
+ * the partitions in parallel. A node only touches its own state: the messages
+ * it sends are buffered in the outbox of its partition for the partition of
+ * the receiver, and the changes of its state and its message counts are
+ * reported to {@link Statistics} and the {@link InvariantChecker} at the end
+ * of the round, partition by partition. At the start of the next round, each
+ * partition collects the messages for its nodes from all outboxes in the
+ * order of the partitions. Every node draws the delays of its messages from
+ * its own random stream, and the workload is sampled between the rounds.
+ * Since the partitions are ordered by ID, everything happens in the same
+ * order as on a single thread, and the results do not depend on the number
+ * of threads.
+ * <p>
+ * The delays are uniform in the range of the RandomMessageTransmission
+ * section, the channels FIFO as with FifoRandomTime. Set the number of
+ * threads with MutualExclusion/Parallel/Threads (0: one per core).
+ * <p>
+ * This is a different model than SandersNodes stepped by the framework with
+ * the same seed: the delays come from the streams of the nodes, only uniform
+ * delays are supported, and there are neither timeouts nor lazy releases. The
+ * results only agree between runs of the parallel rounds.
+ */
+public class ParallelRounds {
+
+	private static final String NAMESPACE = "MutualExclusion/Parallel";
+
+	/** The partitions per thread, such that a slow partition does not hold up the others. */
+	private static final int PARTITIONS_PER_THREAD = 4;
+
+	private static ParallelRounds instance = null;
+
+	/**
+	 * @return The driver of the parallel rounds, created on first use.
+	 */
+	public static ParallelRounds get() {
+		if (instance == null) {
+			instance = new ParallelRounds();
+		}
+		return instance;
+	}
+
+	/**
+	 * Executes a round if there are ParallelSandersNodes. Call in preRound.
+	 */
+	public static void preRound() {
+		if (instance != null) {
+			instance.round();
+		}
+	}
+
+	/**
+	 * Stops the threads.
+	 */
+	public static void shutdown() {
+		if (instance != null) {
+			instance.pool.shutdown();
+			instance = null;
+		}
+	}
+
+	/**
+	 * @return The seed of the random stream of the given node, derived from
+	 * the seed of the simulation like SplitMix64 does, such that the streams
+	 * of neighboring IDs are unrelated.
+	 */
+	public static long streamSeed(long seed, int id) {
+		long z = seed + (id + 1) * 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/** The smallest and the largest delay of a message. */
+	public final double minDelay;
+	public final double maxDelay;
+	/** The seed the random streams of the nodes are derived from. */
+	public final long seed;
+
+	private final int threads;
+	private final ExecutorService pool;
+	/** All nodes, sorted by ID. */
+	private ParallelSandersNode[] nodes = new ParallelSandersNode[0];
+	private final List<Partition> partitions = new ArrayList<Partition>();
+	/** Whether nodes were added since the nodes were partitioned. */
+	private boolean changed = false;
+	/** The outboxes of the current round, 0 or 1, the others are delivered. */
+	private int parity = 0;
+	/** The idle nodes by the round of their next request, a heap of primitive (round, ID) keys. */
+	private final RequestQueue nextRequests = new RequestQueue(64);
+
+	private ParallelRounds() {
+		int n = 0;
+		double min = 0;
+		double max = 0;
+		try {
+			if (Configuration.hasParameter(NAMESPACE + "/Threads")) {
+				n = Configuration.getIntegerParameter(NAMESPACE + "/Threads");
+			}
+			String dist = Configuration.getStringParameter("RandomMessageTransmission/distribution");
+			if (!dist.equalsIgnoreCase("Uniform")) {
+				Tools.fatalError("The parallel rounds only support uniform message delays, not " + dist);
+			}
+			min = Configuration.getDoubleParameter("RandomMessageTransmission/min");
+			max = Configuration.getDoubleParameter("RandomMessageTransmission/max");
+		} catch (CorruptConfigurationEntryException e) {
+			Tools.fatalError(e.getMessage());
+		}
+		if (min < 1 || max < min) {
+			// a message sent in a round must not arrive before the next round
+			Tools.fatalError("The parallel rounds need message delays of at least one round, not " + min + " to " + max);
+		}
+		if (Global.isAsynchronousMode) {
+			Tools.fatalError("The parallel rounds only run in synchronous mode");
+		}
+		minDelay = min;
+		maxDelay = max;
+		threads = n > 0 ? n : Runtime.getRuntime().availableProcessors();
+		seed = Distribution.getRandom().nextLong();
+		pool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "parallel-rounds");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+
+	/**
+	 * Adds a node, which joins the partitions before the next round.
+	 */
+	public void register(ParallelSandersNode node) {
+		changed = true;
+	}
+
+	/**
+	 * Executes a round: starts the due requests, steps all partitions and
+	 * reports their results.
+	 */
+	public void round() {
+		if (changed) {
+			partition();
+		}
+		startRequests();
+		parity ^= 1;
+		try {
+			List<Future<Void>> results = pool.invokeAll(partitions);
+			for (Future<Void> result : results) {
+				result.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		}
+		for (Partition p : partitions) {
+			p.report();
+		}
+	}
+
+	/**
+	 * Splits the nodes into partitions of consecutive IDs. The messages still
+	 * in the outboxes are handed to their receivers first.
+	 */
+	private void partition() {
+		for (Partition p : partitions) {
+			for (Outbox box : p.outboxes[parity]) {
+				box.deliver();
+			}
+		}
+		List<ParallelSandersNode> all = new ArrayList<ParallelSandersNode>();
+		int maxID = NodeTable.maxID();
+		for (int id = 1; id <= maxID; id++) {
+			Node n = NodeTable.get(id);
+			if (n instanceof ParallelSandersNode) {
+				all.add((ParallelSandersNode) n);
+			} else if (n instanceof MutexNode) {
+				Tools.fatalError("The parallel rounds cannot step " + n.getClass().getSimpleName() + " " + n.ID);
+			}
+		}
+		ParallelSandersNode[] sorted = all.toArray(new ParallelSandersNode[all.size()]);
+		int count = Math.max(1, Math.min(sorted.length, threads * PARTITIONS_PER_THREAD));
+		partitions.clear();
+		for (int i = 0; i < count; i++) {
+			partitions.add(new Partition(i, count, (int) ((long) sorted.length * i / count),
+					(int) ((long) sorted.length * (i + 1) / count)));
+		}
+		for (int i = nodes.length; i < sorted.length; i++) {
+			// nodes are only added, the new ones are idle
+			if (sorted[i].state == State.NOT_IN_CS) {
+				scheduleRequest(sorted[i]);
+			}
+		}
+		for (Partition p : partitions) {
+			for (int i = p.first; i < p.end; i++) {
+				sorted[i].partition = p;
+			}
+		}
+		nodes = sorted;
+		changed = false;
+	}
+
+	/**
+	 * Samples the round of the next request of an idle node.
+	 */
+	private void scheduleRequest(MutexNode node) {
+		double time = Workload.get().timeToNextRequest(node);
+		// a request beyond the range of the keys is never due
+		if (time > 0 && Global.currentTime + time <= Integer.MAX_VALUE) {
+			nextRequests.add((int) (Global.currentTime + time), node.ID);
+		}
+	}
+
+	/**
+	 * Samples the requests due in this round, which the nodes start in their preStep.
+	 */
+	private void startRequests() {
+		long round = (long) Global.currentTime;
+		while (!nextRequests.isEmpty() && RequestQueue.timestamp(nextRequests.peek()) <= round) {
+			ParallelSandersNode node = (ParallelSandersNode) NodeTable.get(RequestQueue.nodeId(nextRequests.poll()));
+			if (node.state != State.NOT_IN_CS) {
+				continue;
+			}
+			if (Workload.get().startRequest(node)) {
+				node.requestPending = true;
+			} else {
+				scheduleRequest(node);
+			}
+		}
+	}
+
+	/**
+	 * The messages a partition sent to another partition in a round, the i-th
+	 * from senders[i] to targets[i].
+	 */
+	private static class Outbox {
+		Message[] messages = new Message[16];
+		Node[] senders = new Node[16];
+		ParallelSandersNode[] targets = new ParallelSandersNode[16];
+		double[] arrivals = new double[16];
+		int size = 0;
+
+		void add(Message msg, Node sender, ParallelSandersNode target, double arrival) {
+			if (size == messages.length) {
+				Message[] m = new Message[2 * size];
+				Node[] s = new Node[2 * size];
+				ParallelSandersNode[] t = new ParallelSandersNode[2 * size];
+				double[] a = new double[2 * size];
+				System.arraycopy(messages, 0, m, 0, size);
+				System.arraycopy(senders, 0, s, 0, size);
+				System.arraycopy(targets, 0, t, 0, size);
+				System.arraycopy(arrivals, 0, a, 0, size);
+				messages = m;
+				senders = s;
+				targets = t;
+				arrivals = a;
+			}
+			messages[size] = msg;
+			senders[size] = sender;
+			targets[size] = target;
+			arrivals[size] = arrival;
+			size++;
+		}
+
+		/**
+		 * Hands the messages to their receivers and empties the outbox.
+		 */
+		void deliver() {
+			for (int i = 0; i < size; i++) {
+				targets[i].enqueue(messages[i], senders[i], arrivals[i]);
+				messages[i] = null;
+				senders[i] = null;
+				targets[i] = null;
+			}
+			size = 0;
+		}
+	}
+
+	/**
+	 * The nodes with consecutive IDs one thread steps in a round, and what
+	 * they sent and reported in the round.
+	 */
+	public class Partition implements Callable<Void> {
+		private final int index;
+		/** The nodes first..end-1. */
+		private final int first;
+		private final int end;
+		/** Per round parity, the messages to each partition. */
+		private final Outbox[][] outboxes;
+
+		/** The state changes of the round, the i-th of reportNodes[i]. */
+		private ParallelSandersNode[] reportNodes = new ParallelSandersNode[16];
+		private State[] reportFrom = new State[16];
+		private State[] reportTo = new State[16];
+		private int reports = 0;
+
+		private int messages = 0;
+		private int relinquishs = 0;
+		private int coalesced = 0;
+
+		Partition(int index, int count, int first, int end) {
+			this.index = index;
+			this.first = first;
+			this.end = end;
+			outboxes = new Outbox[2][count];
+			for (int i = 0; i < count; i++) {
+				outboxes[0][i] = new Outbox();
+				outboxes[1][i] = new Outbox();
+			}
+		}
+
+		public Void call() {
+			for (Partition p : partitions) {
+				p.outboxes[parity ^ 1][index].deliver();
+			}
+			double now = Global.currentTime;
+			for (int i = first; i < end; i++) {
+				nodes[i].step(now);
+			}
+			return null;
+		}
+
+		/**
+		 * Sends a message of a node of this partition.
+		 */
+		public void send(Message msg, Node sender, ParallelSandersNode target, double arrival) {
+			outboxes[parity][target.partition.index].add(msg, sender, target, arrival);
+		}
+
+		/**
+		 * Records a change of the state of a node of this partition, reported at the end of the round.
+		 */
+		public void stateChanged(ParallelSandersNode node, State from, State to) {
+			if (reports == reportNodes.length) {
+				ParallelSandersNode[] n = new ParallelSandersNode[2 * reports];
+				State[] f = new State[2 * reports];
+				State[] t = new State[2 * reports];
+				System.arraycopy(reportNodes, 0, n, 0, reports);
+				System.arraycopy(reportFrom, 0, f, 0, reports);
+				System.arraycopy(reportTo, 0, t, 0, reports);
+				reportNodes = n;
+				reportFrom = f;
+				reportTo = t;
+			}
+			reportNodes[reports] = node;
+			reportFrom[reports] = from;
+			reportTo[reports] = to;
+			reports++;
+		}
+
+		/** Records that count messages were sent. */
+		public void messagesSent(int count) {
+			messages += count;
+		}
+
+		/** Records that a relinquish message was sent. */
+		public void relinquishSent() {
+			relinquishs++;
+		}
+
+		/** Records that count messages were sent as part of a composite message. */
+		public void messagesCoalesced(int count) {
+			coalesced += count;
+		}
+
+		/**
+		 * Reports the round to the Statistics and the InvariantChecker, and
+		 * schedules the next request of the nodes that left the CS.
+		 */
+		private void report() {
+			for (int i = 0; i < reports; i++) {
+				reportNodes[i].reportDeferred(reportFrom[i], reportTo[i]);
+				if (reportTo[i] == State.NOT_IN_CS) {
+					scheduleRequest(reportNodes[i]);
+				}
+				reportNodes[i] = null;
+			}
+			reports = 0;
+			Statistics.messagesSent(messages);
+			Statistics.relinquishSent(relinquishs);
+			Statistics.messagesCoalesced(coalesced);
+			messages = 0;
+			relinquishs = 0;
+			coalesced = 0;
+		}
+	}
+}
@@ -0,0 +1,372 @@
+/*
+ Copyright (c) 2007, Distributed Computing Group (DCG)
+                    ETH Zurich
+                    Switzerland
+                    dcg.ethz.ch
+
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ - Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+ - Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the
+   distribution.
+
+ - Neither the name 'Sinalgo' nor the names of its contributors may be
+   used to endorse or promote products derived from this software
+   without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package projects.mutualExclusion;
+
+import java.util.Arrays;
+
+import projects.mutualExclusion.nodes.nodeImplementations.MutexNode.State;
+
+/**
+ * Global counters of the mutual exclusion simulation.
+ * <p>
+ * The nodes report every message they send and every change of their state,
+ * such that the totals can be read in constant time at the end of a round
+ * instead of iterating over all nodes. Call {@link #endRound()} once per round
+ * to obtain the changes during the last round.
+ */
+public class Statistics {
+
+	private static long messages = 0;
+	private static long relinquishs = 0;
+	private static long csEntries = 0;
+	private static long requests = 0;
+	private static long coalesced = 0;
+	/** The number of CS entries per lock. */
+	private static long[] lockEntries = new long[1];
+	/** The time each lock was last left, -1 if never. */
+	private static double[] lockExits = {-1};
+	private static long sharedEntries = 0;
+	private static long dropped = 0;
+	private static long recoveryMessages = 0;
+	private static long reusedEntries = 0;
+	private static long savedMessages = 0;
+	private static long lazyInquiries = 0;
+
+	private static final LatencyHistogram waitingTime = new LatencyHistogram();
+	private static final LatencyHistogram holdTime = new LatencyHistogram();
+	private static final LatencyHistogram relinquishsPerRequest = new LatencyHistogram();
+	private static final LatencyHistogram recoveryTime = new LatencyHistogram();
+	private static final LatencyHistogram synchronizationDelay = new LatencyHistogram();
+	private static final LatencyHistogram keptVoteDelay = new LatencyHistogram();
+	private static final LatencyHistogram roundWaitingTime = new LatencyHistogram();
+	private static final LatencyHistogram roundHoldTime = new LatencyHistogram();
+	private static final LatencyHistogram roundRelinquishsPerRequest = new LatencyHistogram();
+	private static final LatencyHistogram currentWaitingTime = new LatencyHistogram();
+	private static final LatencyHistogram currentHoldTime = new LatencyHistogram();
+	private static final LatencyHistogram currentRelinquishsPerRequest = new LatencyHistogram();
+	private static int[] stateCounts = new int[State.values().length];
+
+	private static long lastMessages = 0;
+	private static long lastRelinquishs = 0;
+	private static long roundMessages = 0;
+	private static long roundRelinquishs = 0;
+
+	/**
+	 * Registers a new node in the given state.
+	 */
+	public static void nodeAdded(State state) {
+		stateCounts[state.ordinal()]++;
+	}
+
+	/**
+	 * Records that a node changed its state.
+	 */
+	public static void stateChanged(State from, State to) {
+		stateCounts[from.ordinal()]--;
+		stateCounts[to.ordinal()]++;
+		if (to == State.IN_CS) {
+			csEntries++;
+		} else if (to == State.WAITING) {
+			requests++;
+		}
+	}
+
+	/**
+	 * Records that count messages were sent.
+	 */
+	public static void messagesSent(int count) {
+		messages += count;
+	}
+
+	/**
+	 * Records that count messages were not sent on their own but as part of
+	 * a composite message.
+	 */
+	public static void messagesCoalesced(int count) {
+		coalesced += count;
+	}
+
+	/**
+	 * Records that the reliability model dropped a message.
+	 */
+	public static void messageDropped() {
+		dropped++;
+	}
+
+	/**
+	 * Records that a message was sent only to recover from lost messages,
+	 * e.g. a retransmitted request.
+	 */
+	public static void recoveryMessageSent() {
+		recoveryMessages++;
+	}
+
+	/**
+	 * Records that a request that timed out entered the CS.
+	 * @param time The time between the first retransmission and the entry.
+	 */
+	public static void recovered(double time) {
+		recoveryTime.record(time);
+	}
+
+	/**
+	 * Records that a request entered the CS with the votes its node kept
+	 * after the previous CS (lazy release).
+	 * @param saved The messages the request did not send and receive.
+	 */
+	public static void votesReused(int saved) {
+		reusedEntries++;
+		savedMessages += saved;
+	}
+
+	/**
+	 * Records that a voter asked for a vote that the holder may keep after the CS.
+	 */
+	public static void lazyInquirySent() {
+		lazyInquiries++;
+	}
+
+	/**
+	 * Records that a voter got back a vote that was kept after the CS.
+	 * @param waited The time since the voter asked for it.
+	 */
+	public static void keptVoteReturned(double waited) {
+		keptVoteDelay.record(waited);
+	}
+
+	/**
+	 * Records that count relinquish messages were sent.
+	 */
+	public static void relinquishSent(int count) {
+		relinquishs += count;
+	}
+
+	/**
+	 * Records that a node entered the CS.
+	 * @param waited The time between the request and the entry.
+	 * @param relinquishs The number of relinquish messages the node sent for this request.
+	 */
+	public static void csEntered(double waited, int relinquishs) {
+		currentWaitingTime.record(waited);
+		currentRelinquishsPerRequest.record(relinquishs);
+	}
+
+	/**
+	 * Records that a node entered the CS of the given lock, shared or exclusive.
+	 * An exclusive entry of a request that already waited when the lock was
+	 * last left records the synchronization delay, the time between that exit
+	 * and the entry.
+	 * @param requested The time of the request.
+	 * @param entered The time of the entry.
+	 */
+	public static void lockEntered(int lock, boolean shared, double requested, double entered) {
+		if (shared) {
+			sharedEntries++;
+		}
+		if (lock >= lockEntries.length) {
+			long[] grown = new long[Math.max(2 * lockEntries.length, lock + 1)];
+			System.arraycopy(lockEntries, 0, grown, 0, lockEntries.length);
+			lockEntries = grown;
+		}
+		lockEntries[lock]++;
+		if (!shared && lock < lockExits.length && requested <= lockExits[lock]) {
+			synchronizationDelay.record(entered - lockExits[lock]);
+		}
+	}
+
+	/**
+	 * Records that a node left the CS of the given lock at the given time.
+	 */
+	public static void lockLeft(int lock, double time) {
+		if (lock >= lockExits.length) {
+			int length = lockExits.length;
+			double[] grown = new double[Math.max(2 * length, lock + 1)];
+			System.arraycopy(lockExits, 0, grown, 0, length);
+			Arrays.fill(grown, length, grown.length, -1);
+			lockExits = grown;
+		}
+		lockExits[lock] = time;
+	}
+
+	/**
+	 * Records that a node left the CS after holding it for the given time.
+	 */
+	public static void csLeft(double held) {
+		currentHoldTime.record(held);
+	}
+
+	/**
+	 * Closes the current round: the per-round values returned afterwards
+	 * describe the round that just ended.
+	 */
+	public static void endRound() {
+		roundMessages = messages - lastMessages;
+		roundRelinquishs = relinquishs - lastRelinquishs;
+		lastMessages = messages;
+		lastRelinquishs = relinquishs;
+		endRound(currentWaitingTime, roundWaitingTime, waitingTime);
+		endRound(currentHoldTime, roundHoldTime, holdTime);
+		endRound(currentRelinquishsPerRequest, roundRelinquishsPerRequest, relinquishsPerRequest);
+	}
+
+	private static void endRound(LatencyHistogram current, LatencyHistogram round, LatencyHistogram total) {
+		total.add(current);
+		round.reset();
+		round.add(current);
+		current.reset();
+	}
+
+	/** @return The number of nodes in the given state. */
+	public static int count(State state) {
+		return stateCounts[state.ordinal()];
+	}
+
+	/** @return The number of messages sent since the start of the simulation. */
+	public static long messages() {
+		return messages;
+	}
+
+	/** @return The number of messages merged into composite messages since the start of the simulation. */
+	public static long coalesced() {
+		return coalesced;
+	}
+
+	/** @return The number of shared CS entries since the start of the simulation. */
+	public static long sharedEntries() {
+		return sharedEntries;
+	}
+
+	/** @return The number of CS entries of the given lock since the start of the simulation. */
+	public static long lockEntries(int lock) {
+		return lock < lockEntries.length ? lockEntries[lock] : 0;
+	}
+
+	/** @return The number of messages the reliability model dropped since the start of the simulation. */
+	public static long dropped() {
+		return dropped;
+	}
+
+	/** @return The number of messages sent to recover from lost messages since the start of the simulation. */
+	public static long recoveryMessages() {
+		return recoveryMessages;
+	}
+
+	/** @return The times between the first retransmission of a request and its entry into the CS. */
+	public static LatencyHistogram recoveryTime() {
+		return recoveryTime;
+	}
+
+	/** @return The times between the exit of a lock and the next exclusive entry by a request that waited for it. */
+	public static LatencyHistogram synchronizationDelay() {
+		return synchronizationDelay;
+	}
+
+	/** @return The number of CS entries with the votes kept after the previous CS since the start of the simulation. */
+	public static long reusedEntries() {
+		return reusedEntries;
+	}
+
+	/** @return The number of messages the entries with kept votes saved since the start of the simulation. */
+	public static long savedMessages() {
+		return savedMessages;
+	}
+
+	/** @return The number of lazy inquiries sent since the start of the simulation. */
+	public static long lazyInquiries() {
+		return lazyInquiries;
+	}
+
+	/** @return The times the voters waited for votes kept after the CS, which the deferred requests waited in addition. */
+	public static LatencyHistogram keptVoteDelay() {
+		return keptVoteDelay;
+	}
+
+	/** @return The number of relinquish messages sent since the start of the simulation. */
+	public static long relinquishs() {
+		return relinquishs;
+	}
+
+	/** @return The number of times a node entered the CS since the start of the simulation. */
+	public static long csEntries() {
+		return csEntries;
+	}
+
+	/** @return The number of requests for the CS since the start of the simulation. */
+	public static long requests() {
+		return requests;
+	}
+
+	/** @return The waiting times between a request and the entry into the CS, up to the last round. */
+	public static LatencyHistogram waitingTime() {
+		return waitingTime;
+	}
+
+	/** @return The times the CS was held, up to the last round. */
+	public static LatencyHistogram holdTime() {
+		return holdTime;
+	}
+
+	/** @return The number of relinquish messages per request, up to the last round. */
+	public static LatencyHistogram relinquishsPerRequest() {
+		return relinquishsPerRequest;
+	}
+
+	/** @return The waiting times of the nodes that entered the CS in the last round. */
+	public static LatencyHistogram roundWaitingTime() {
+		return roundWaitingTime;
+	}
+
+	/** @return The hold times of the nodes that left the CS in the last round. */
+	public static LatencyHistogram roundHoldTime() {
+		return roundHoldTime;
+	}
+
+	/** @return The relinquish messages per request of the nodes that entered the CS in the last round. */
+	public static LatencyHistogram roundRelinquishsPerRequest() {
+		return roundRelinquishsPerRequest;
+	}
+
+	/** @return The number of messages sent in the last round. */
+	public static long roundMessages() {
+		return roundMessages;
+	}
+
+	/** @return The number of relinquish messages sent in the last round. */
+	public static long roundRelinquishs() {
+		return roundRelinquishs;
+	}
+}
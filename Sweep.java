@@ -0,0 +1,298 @@
+/*
+ Copyright (c) 2007, Distributed Computing Group (DCG)
+                    ETH Zurich
+                    Switzerland
+                    dcg.ethz.ch
+
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ - Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+ - Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the
+   distribution.
+
+ - Neither the name 'Sinalgo' nor the names of its contributors may be
+   used to endorse or promote products derived from this software
+   without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package projects.mutualExclusion;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs a grid of mutual exclusion simulations in parallel and collects their
+ * final metrics in one summary table.
+ * <p>
+ * The framework keeps the simulation in static state, hence each run is a
+ * separate JVM executing sinalgo.runtime.Main in batch mode. The runs are
+ * started on a pool with one thread per core. Each run uses its own fixed
+ * seed and writes a binary metrics file (see {@link MetricsFile}) from which
+ * the last record is read.
+ * <p>
+ * The sweep is described by a properties file. Every key that is not one of
+ * the keys below is passed to the runs with -overwrite, its value being a
+ * comma separated list of values to try, e.g.
+ * <pre>
+ * nodes = 100, 400, 900
+ * rounds = 1000
+ * MutualExclusion/CriticalSection/Enter/Threshold = 0.01, 0.02, 0.05
+ * </pre>
+ * <ul>
+ * <li><code>nodes</code>: The number of nodes (list)</li>
+ * <li><code>rounds</code>: The number of rounds of each run</li>
+ * <li><code>repetitions</code>: The number of runs per configuration, each with another seed (default 1)</li>
+ * <li><code>seed</code>: The seed of the first run (default 1)</li>
+ * <li><code>node</code>: The node implementation (default mutualExclusion:SandersNode)</li>
+ * <li><code>distribution</code>: The distribution model (default Grid2D)</li>
+ * <li><code>threads</code>: The number of concurrent runs (default: number of cores)</li>
+ * </ul>
+ * Usage: <code>Sweep &lt;sweep file&gt; &lt;output directory&gt;</code>, the summary is written to
+ * summary.csv in the output directory. A run that cannot be executed does
+ * not stop the sweep, its line of the summary only names the error.
+ */
+public class Sweep {
+
+	private static final String[] RESERVED = {"nodes", "rounds", "repetitions", "seed", "node", "distribution", "threads"};
+
+	/**
+	 * One simulation of the sweep.
+	 */
+	private static class Run {
+		final int index;
+		final int nodes;
+		final long seed;
+		final String[] keys;
+		final String[] values;
+
+		Run(int index, int nodes, long seed, String[] keys, String[] values) {
+			this.index = index;
+			this.nodes = nodes;
+			this.seed = seed;
+			this.keys = keys;
+			this.values = values;
+		}
+	}
+
+	private final Properties spec;
+	private final File outputDir;
+
+	public Sweep(Properties spec, File outputDir) {
+		this.spec = spec;
+		this.outputDir = outputDir;
+	}
+
+	/**
+	 * @return The Cartesian product of all parameter values.
+	 */
+	private List<Run> runs() {
+		TreeMap<String, String[]> parameters = new TreeMap<String, String[]>();
+		for (String key : spec.stringPropertyNames()) {
+			if (!isReserved(key)) {
+				parameters.put(key, split(spec.getProperty(key)));
+			}
+		}
+		String[] keys = parameters.keySet().toArray(new String[0]);
+		String[] nodeCounts = split(spec.getProperty("nodes", "100"));
+		int repetitions = Integer.parseInt(spec.getProperty("repetitions", "1").trim());
+		long seed = Long.parseLong(spec.getProperty("seed", "1").trim());
+
+		List<Run> runs = new ArrayList<Run>();
+		int[] choice = new int[keys.length];
+		while (true) {
+			String[] values = new String[keys.length];
+			for (int k = 0; k < keys.length; k++) {
+				values[k] = parameters.get(keys[k])[choice[k]];
+			}
+			for (String n : nodeCounts) {
+				for (int r = 0; r < repetitions; r++) {
+					runs.add(new Run(runs.size(), Integer.parseInt(n), seed + runs.size(), keys, values));
+				}
+			}
+			// next combination
+			int k = keys.length - 1;
+			while (k >= 0 && ++choice[k] == parameters.get(keys[k]).length) {
+				choice[k--] = 0;
+			}
+			if (k < 0) {
+				return runs;
+			}
+		}
+	}
+
+	/**
+	 * Executes a run and returns its line of the summary table.
+	 */
+	private String execute(Run run) throws IOException, InterruptedException {
+		File metrics = new File(outputDir, "run" + run.index + ".bin");
+		List<String> command = new ArrayList<String>();
+		command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add("sinalgo.runtime.Main");
+		command.add("-project");
+		command.add("mutualExclusion");
+		command.add("-batch");
+		command.add("-gen");
+		command.add(Integer.toString(run.nodes));
+		command.add(spec.getProperty("node", "mutualExclusion:SandersNode").trim());
+		command.add(spec.getProperty("distribution", "Grid2D").trim());
+		command.add("-rounds");
+		command.add(spec.getProperty("rounds", "1000").trim());
+		command.add("-overwrite");
+		command.add("useFixedSeed=true");
+		command.add("fixedSeed=" + run.seed);
+		command.add("MutualExclusion/Metrics/CSV=false");
+		command.add("MutualExclusion/Metrics/BinaryFile=" + metrics.getPath());
+		for (int k = 0; k < run.keys.length; k++) {
+			command.add(run.keys[k] + "=" + run.values[k]);
+		}
+		ProcessBuilder builder = new ProcessBuilder(command);
+		builder.redirectErrorStream(true);
+		builder.redirectOutput(new File(outputDir, "run" + run.index + ".log"));
+		int exitCode = builder.start().waitFor();
+
+		StringBuilder line = line(run);
+		long[] last = metrics.exists() ? MetricsFile.lastRecord(metrics.getPath()) : null;
+		if (last == null) {
+			line.append(",,,,,,");
+		} else {
+			long rounds = last[0] + 1;
+			long messages = last[4];
+			long relinquishs = last[5];
+			long csEntries = last[6];
+			line.append(',').append(rounds)
+				.append(',').append(csEntries)
+				.append(',').append(messages)
+				.append(',').append(relinquishs)
+				.append(',').append(csEntries == 0 ? "" : Double.toString((double) messages / csEntries))
+				.append(',').append((double) csEntries / rounds);
+		}
+		line.append(',').append(exitCode).append(',');
+		return line.toString();
+	}
+
+	/**
+	 * @return The line of the summary table of a run that failed with the given error.
+	 */
+	private static String failed(Run run, Throwable error) {
+		String message = error.toString().replaceAll("[,\\r\\n]+", " ");
+		return line(run).append(",,,,,,,,").append(message).toString();
+	}
+
+	/**
+	 * @return The start of the line of a run in the summary table, its parameters.
+	 */
+	private static StringBuilder line(Run run) {
+		StringBuilder line = new StringBuilder();
+		line.append(run.index).append(',').append(run.nodes).append(',').append(run.seed);
+		for (String value : run.values) {
+			line.append(',').append(value);
+		}
+		return line;
+	}
+
+	/**
+	 * Executes all runs and writes the summary table.
+	 */
+	public void execute() throws Exception {
+		outputDir.mkdirs();
+		List<Run> runs = runs();
+		int threads = Integer.parseInt(spec.getProperty("threads",
+				Integer.toString(Runtime.getRuntime().availableProcessors())).trim());
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		List<Future<String>> results = new ArrayList<Future<String>>();
+		for (final Run run : runs) {
+			results.add(pool.submit(new Callable<String>() {
+				public String call() throws Exception {
+					return execute(run);
+				}
+			}));
+		}
+		pool.shutdown();
+
+		PrintStream summary = new PrintStream(new FileOutputStream(new File(outputDir, "summary.csv")));
+		try {
+			StringBuilder header = new StringBuilder("run,nodes,seed");
+			for (String key : runs.isEmpty() ? new String[0] : runs.get(0).keys) {
+				header.append(',').append(key);
+			}
+			header.append(",rounds,cs_entries,messages,reliquishs,messages_per_cs,cs_per_round,exit_code,error");
+			summary.println(header);
+			for (int i = 0; i < results.size(); i++) {
+				try {
+					summary.println(results.get(i).get());
+					System.out.println("Finished run " + (i + 1) + " of " + results.size());
+				} catch (ExecutionException e) {
+					summary.println(failed(runs.get(i), e.getCause()));
+					System.err.println("Run " + (i + 1) + " of " + results.size() + " failed: " + e.getCause());
+				}
+			}
+		} finally {
+			summary.close();
+		}
+	}
+
+	private static boolean isReserved(String key) {
+		for (String r : RESERVED) {
+			if (r.equals(key)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static String[] split(String list) {
+		String[] values = list.split(",");
+		for (int i = 0; i < values.length; i++) {
+			values[i] = values[i].trim();
+		}
+		return values;
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length != 2) {
+			System.err.println("Usage: Sweep <sweep file> <output directory>");
+			System.exit(1);
+		}
+		Properties spec = new Properties();
+		FileInputStream in = new FileInputStream(args[0]);
+		try {
+			spec.load(in);
+		} finally {
+			in.close();
+		}
+		new Sweep(spec, new File(args[1])).execute();
+	}
+}
@@ -0,0 +1,361 @@
+/*
+ Copyright (c) 2007, Distributed Computing Group (DCG)
+                    ETH Zurich
+                    Switzerland
+                    dcg.ethz.ch
+
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ - Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+ - Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the
+   distribution.
+
+ - Neither the name 'Sinalgo' nor the names of its contributors may be
+   used to endorse or promote products derived from this software
+   without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package projects.mutualExclusion;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import projects.mutualExclusion.nodes.nodeImplementations.MutexNode;
+import sinalgo.configuration.Configuration;
+import sinalgo.configuration.CorruptConfigurationEntryException;
+import sinalgo.runtime.Global;
+import sinalgo.tools.Tools;
+import sinalgo.tools.statistics.Distribution;
+
+/**
+ * The parameters of the MutualExclusion/CriticalSection section of the
+ * configuration file.
+ * <p>
+ * The section is parsed only once, the first time the workload is needed.
+ * All nodes share the same distribution objects, which draw their samples
+ * from the (seeded) random number generator of the framework.
+ * <p>
+ * The requests can be recorded to a {@link WorkloadTrace} with
+ * MutualExclusion/Trace/Record, and replayed instead of sampled with
+ * MutualExclusion/Trace/Replay, such that two versions of an algorithm
+ * run against exactly the same load.
+ */
+public class Workload {
+
+	private static final String NAMESPACE = "MutualExclusion/CriticalSection";
+
+	private static Workload instance = null;
+
+	/**
+	 * @return The workload described by the configuration file.
+	 */
+	public static Workload get() {
+		if (instance == null) {
+			instance = new Workload();
+		}
+		return instance;
+	}
+
+	/** Sampled each round by a node that is not in the CS, null if not configured. */
+	private final Distribution enterDistribution;
+	/** A node requests the CS if the sample is at most this threshold. */
+	private final double enterThreshold;
+	/** The time a node stays in the CS, null if not configured. */
+	private final Distribution leaveDistribution;
+	/** The number of independent locks. */
+	private final int resources;
+	/** The cumulative probabilities of the locks, null if there is only one. */
+	private final double[] resourceCDF;
+	/** The fraction of shared (read) requests. */
+	private final double readRatio;
+	/** The probability that {@link #wantToEnterCS()} is true, NaN until {@link #timeToNextRequest(MutexNode)} needs it. */
+	private double enterProbability = Double.NaN;
+	/** Records the sampled requests, null if not configured. */
+	private WorkloadTrace.Recorder recorder = null;
+	/** Replaces the sampling, null if not configured. */
+	private WorkloadTrace.Replay replay = null;
+
+	private Workload() {
+		String namespace = NAMESPACE + "/Enter";
+		Distribution dist = null;
+		try {
+			dist = Distribution.getDistributionFromConfigFile(namespace + "/Distribution");
+		} catch (CorruptConfigurationEntryException e) {
+			e.printStackTrace();
+		}
+		enterDistribution = dist;
+		double threshold;
+		try {
+			threshold = Configuration.getDoubleParameter(namespace + "/Threshold");
+		} catch (CorruptConfigurationEntryException e) {
+			e.printStackTrace();
+			threshold = Double.NEGATIVE_INFINITY;
+		}
+		enterThreshold = threshold;
+
+		namespace = NAMESPACE + "/Leave";
+		dist = null;
+		try {
+			dist = Distribution.getDistributionFromConfigFile(namespace + "/Distribution");
+		} catch (CorruptConfigurationEntryException e) {
+			e.printStackTrace();
+		}
+		leaveDistribution = dist;
+
+		// the lock of a request follows a Zipf distribution, skew 0 is uniform
+		namespace = NAMESPACE + "/Resources";
+		int count = 1;
+		double skew = 0;
+		try {
+			if (Configuration.hasParameter(namespace + "/Count")) {
+				count = Math.max(1, Configuration.getIntegerParameter(namespace + "/Count"));
+			}
+			if (Configuration.hasParameter(namespace + "/Skew")) {
+				skew = Configuration.getDoubleParameter(namespace + "/Skew");
+			}
+		} catch (CorruptConfigurationEntryException e) {
+			e.printStackTrace();
+		}
+		resources = count;
+		double ratio = 0;
+		try {
+			if (Configuration.hasParameter(NAMESPACE + "/ReadRatio")) {
+				ratio = Configuration.getDoubleParameter(NAMESPACE + "/ReadRatio");
+			}
+		} catch (CorruptConfigurationEntryException e) {
+			e.printStackTrace();
+		}
+		readRatio = ratio;
+		try {
+			if (Configuration.hasParameter("MutualExclusion/Trace/Replay")) {
+				replay = new WorkloadTrace.Replay(Configuration.getStringParameter("MutualExclusion/Trace/Replay"));
+			}
+			if (Configuration.hasParameter("MutualExclusion/Trace/Record")) {
+				recorder = new WorkloadTrace.Recorder(Configuration.getStringParameter("MutualExclusion/Trace/Record"));
+			}
+		} catch (CorruptConfigurationEntryException e) {
+			Tools.fatalError(e.getMessage());
+		} catch (IOException e) {
+			Tools.fatalError("Cannot open the workload trace: " + e.getMessage());
+		}
+		if (count == 1) {
+			resourceCDF = null;
+		} else {
+			resourceCDF = new double[count];
+			double sum = 0;
+			for (int i = 0; i < count; i++) {
+				sum += 1 / Math.pow(i + 1, skew);
+				resourceCDF[i] = sum;
+			}
+			for (int i = 0; i < count; i++) {
+				resourceCDF[i] /= sum;
+			}
+		}
+	}
+
+	/**
+	 * Decides whether a node that is not in the CS requests it now, and if so
+	 * sets the lock, the mode and the hold time of the request on the node.
+	 * @return True if the node requests the CS.
+	 */
+	public boolean nextRequest(MutexNode node) {
+		if (replay == null && !wantToEnterCS()) {
+			return false;
+		}
+		return startRequest(node);
+	}
+
+	/**
+	 * Sets the lock, the mode and the hold time of a request the node starts
+	 * now, in asynchronous mode when its next request is due.
+	 * @return False if the replayed trace has no request of the node up to now.
+	 */
+	public boolean startRequest(MutexNode node) {
+		int round = (int) Global.currentTime;
+		if (replay != null) {
+			int record = replay.next(round, node.ID);
+			if (record < 0) {
+				return false;
+			}
+			node.resource = replay.lock(record);
+			node.shared = replay.shared(record);
+			node.holdTime = replay.hold(record);
+		} else {
+			node.holdTime = timeToLeaveCS();
+			node.resource = nextResource();
+			node.shared = nextIsShared();
+		}
+		if (recorder != null) {
+			try {
+				recorder.record(round, node.ID, node.resource, node.shared, node.holdTime);
+			} catch (IOException e) {
+				Tools.fatalError("Cannot write the workload trace: " + e.getMessage());
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * In asynchronous mode, an idle node does not poll the workload every
+	 * round but schedules its next request. The number of rounds a synchronous
+	 * node polls {@link #wantToEnterCS()} until it is true is geometric, and
+	 * is sampled here from a single uniform draw, so both modes see the same
+	 * load.
+	 * @return The time until the next request of an idle node, -1 if it never
+	 * requests the CS again.
+	 */
+	public double timeToNextRequest(MutexNode node) {
+		if (replay != null) {
+			int round = replay.nextRound(node.ID);
+			if (round < 0) {
+				return -1;
+			}
+			return Math.max(1, round - Global.currentTime);
+		}
+		if (Double.isNaN(enterProbability)) {
+			enterProbability = computeEnterProbability();
+		}
+		if (enterProbability <= 0) {
+			return -1;
+		}
+		if (enterProbability >= 1) {
+			return 1;
+		}
+		double u = Distribution.getRandom().nextDouble();
+		return 1 + Math.floor(Math.log1p(-u) / Math.log1p(-enterProbability));
+	}
+
+	/**
+	 * The probability that a sample of the enter distribution is at most the
+	 * threshold, in closed form for the distributions of the framework.
+	 */
+	private double computeEnterProbability() {
+		if (enterDistribution == null) {
+			return 0 <= enterThreshold ? 1 : 0;
+		}
+		String path = NAMESPACE + "/Enter/Distribution";
+		double t = enterThreshold;
+		try {
+			String type = Configuration.getStringParameter(path + "/distribution");
+			if (type.equalsIgnoreCase("Uniform")) {
+				double min = Configuration.getDoubleParameter(path + "/min");
+				double max = Configuration.getDoubleParameter(path + "/max");
+				if (max > min) {
+					return Math.min(1, Math.max(0, (t - min) / (max - min)));
+				}
+				return min <= t ? 1 : 0;
+			}
+			if (type.equalsIgnoreCase("Constant")) {
+				return Configuration.getDoubleParameter(path + "/constant") <= t ? 1 : 0;
+			}
+			if (type.equalsIgnoreCase("Exponential")) {
+				double lambda = Configuration.getDoubleParameter(path + "/lambda");
+				return t <= 0 ? 0 : -Math.expm1(-lambda * t);
+			}
+			if (type.equalsIgnoreCase("Gaussian")) {
+				double mean = Configuration.getDoubleParameter(path + "/mean");
+				double variance = Configuration.getDoubleParameter(path + "/variance");
+				if (variance <= 0) {
+					return mean <= t ? 1 : 0;
+				}
+				return normalCDF((t - mean) / Math.sqrt(variance));
+			}
+			if (type.equalsIgnoreCase("Poisson")) {
+				double lambda = Configuration.getDoubleParameter(path + "/lambda");
+				// the terms e^-lambda lambda^k / k! up to the threshold, in logarithms
+				double p = 0;
+				double logTerm = -lambda;
+				for (int k = 0; k <= t; k++) {
+					p += Math.exp(logTerm);
+					logTerm += Math.log(lambda) - Math.log(k + 1);
+				}
+				return Math.min(1, p);
+			}
+			Tools.fatalError("The asynchronous mode does not support the " + type + " distribution in " + path);
+		} catch (CorruptConfigurationEntryException e) {
+			Tools.fatalError(e.getMessage());
+		}
+		return 0;
+	}
+
+	/**
+	 * @return The standard normal distribution function at x, with an
+	 * absolute error below 1.5e-7 (Abramowitz and Stegun 7.1.26).
+	 */
+	private static double normalCDF(double x) {
+		double z = Math.abs(x) / Math.sqrt(2);
+		double s = 1 / (1 + 0.3275911 * z);
+		double erfc = s * (0.254829592 + s * (-0.284496736 + s * (1.421413741 + s * (-1.453152027 + s * 1.061405429))))
+				* Math.exp(-z * z);
+		return x >= 0 ? 1 - erfc / 2 : erfc / 2;
+	}
+
+	/**
+	 * Closes the trace files.
+	 */
+	public void close() throws IOException {
+		if (recorder != null) {
+			recorder.close();
+			recorder = null;
+		}
+	}
+
+	/**
+	 * @return True if a node that is not in the CS should request it now.
+	 */
+	public boolean wantToEnterCS() {
+		double value = enterDistribution == null ? 0 : enterDistribution.nextSample();
+		return value <= enterThreshold;
+	}
+
+	/**
+	 * @return The number of independent locks.
+	 */
+	public int resources() {
+		return resources;
+	}
+
+	/**
+	 * @return The lock of a new request, lock 0 being the most popular one.
+	 */
+	public int nextResource() {
+		if (resourceCDF == null) {
+			return 0;
+		}
+		int i = Arrays.binarySearch(resourceCDF, Distribution.getRandom().nextDouble());
+		return Math.min(i >= 0 ? i : -i - 1, resources - 1);
+	}
+
+	/**
+	 * @return True if a new request only reads, i.e. can share the CS with other readers.
+	 */
+	public boolean nextIsShared() {
+		return readRatio > 0 && Distribution.getRandom().nextDouble() < readRatio;
+	}
+
+	/**
+	 * @return The time a node that just entered the CS stays in it.
+	 */
+	public double timeToLeaveCS() {
+		return leaveDistribution == null ? 3 : leaveDistribution.nextSample();
+	}
+}
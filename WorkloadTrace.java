@@ -0,0 +1,264 @@
+/*
+ Copyright (c) 2007, Distributed Computing Group (DCG)
+                    ETH Zurich
+                    Switzerland
+                    dcg.ethz.ch
+
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ - Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+ - Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the
+   distribution.
+
+ - Neither the name 'Sinalgo' nor the names of its contributors may be
+   used to endorse or promote products derived from this software
+   without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package projects.mutualExclusion;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import projects.mutualExclusion.nodes.messages.IntQueue;
+
+/**
+ * A compact binary trace of the requests of a workload, one fixed-size
+ * record per request: the round, the node, the lock (the highest bit set for
+ * a shared request) and the time the node stays in the CS.
+ * <p>
+ * A {@link Recorder} streams the records through a direct buffer like the
+ * {@link MetricsFile}. A {@link Replay} maps the file into memory and reads
+ * it sequentially, so a trace with millions of requests is never loaded into
+ * the heap: only the indices of the requests a node could not issue yet,
+ * because it still waits for or is in the CS, are kept in a queue per node.
+ */
+public class WorkloadTrace {
+
+	private static final int MAGIC = 0x534d5431; // "SMT1"
+
+	/** The columns of a record, in the order they are stored. */
+	public static final String HEADER = "round,node,lock,shared,hold";
+
+	/** round, node and lock as int, the hold time as double. */
+	private static final int RECORD_SIZE = 3 * 4 + 8;
+
+	private static final int HEADER_SIZE = 8;
+
+	private static final int SHARED = 0x80000000;
+
+	/**
+	 * Writes a trace.
+	 */
+	public static class Recorder {
+
+		private final FileChannel channel;
+		private final ByteBuffer buffer = ByteBuffer.allocateDirect(RECORD_SIZE * 4096);
+
+		/**
+		 * Creates (or truncates) the file and writes its header.
+		 */
+		public Recorder(String fileName) throws IOException {
+			channel = new FileOutputStream(fileName).getChannel();
+			buffer.putInt(MAGIC);
+			buffer.putInt(RECORD_SIZE);
+		}
+
+		/**
+		 * Appends a request.
+		 */
+		public void record(int round, int node, int lock, boolean shared, double hold) throws IOException {
+			if (buffer.remaining() < RECORD_SIZE) {
+				flush();
+			}
+			buffer.putInt(round);
+			buffer.putInt(node);
+			buffer.putInt(shared ? lock | SHARED : lock);
+			buffer.putDouble(hold);
+		}
+
+		private void flush() throws IOException {
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			buffer.clear();
+		}
+
+		/**
+		 * Writes the pending records and closes the file.
+		 */
+		public void close() throws IOException {
+			flush();
+			channel.close();
+		}
+	}
+
+	/**
+	 * Reads a trace from a memory-mapped file.
+	 */
+	public static class Replay {
+
+		/** The records per mapped segment, such that a segment stays below 1 GB. */
+		private static final int SEGMENT_RECORDS = (1 << 30) / RECORD_SIZE;
+
+		private final MappedByteBuffer[] segments;
+		private final int records;
+		/** The index of the first record not yet handed to its node. */
+		private int next = 0;
+		/** The indices of the requests handed to a node but not yet issued, by node ID. */
+		private IntQueue[] pending = new IntQueue[16];
+
+		public Replay(String fileName) throws IOException {
+			RandomAccessFile file = new RandomAccessFile(fileName, "r");
+			try {
+				FileChannel channel = file.getChannel();
+				long size = channel.size() - HEADER_SIZE;
+				ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+				if (size < 0 || header.getInt() != MAGIC || header.getInt() != RECORD_SIZE) {
+					throw new IOException(fileName + " is not a workload trace");
+				}
+				if (size / RECORD_SIZE > Integer.MAX_VALUE) {
+					throw new IOException(fileName + " has too many records");
+				}
+				records = (int) (size / RECORD_SIZE);
+				segments = new MappedByteBuffer[(records + SEGMENT_RECORDS - 1) / SEGMENT_RECORDS];
+				for (int i = 0; i < segments.length; i++) {
+					long start = HEADER_SIZE + (long) i * SEGMENT_RECORDS * RECORD_SIZE;
+					long length = (long) Math.min(SEGMENT_RECORDS, records - i * SEGMENT_RECORDS) * RECORD_SIZE;
+					segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+				}
+			} finally {
+				// the mappings stay valid after the file is closed
+				file.close();
+			}
+		}
+
+		/**
+		 * @return The index of the next request of the node up to the given
+		 * round, -1 if there is none.
+		 */
+		public int next(int round, int node) {
+			while (next < records && round(next) <= round) {
+				dispatch();
+			}
+			if (hasPending(node)) {
+				return pending[node].poll();
+			}
+			return -1;
+		}
+
+		/**
+		 * @return The round of the next request of the node, -1 if there is
+		 * none. Reads ahead in the trace as far as needed.
+		 */
+		public int nextRound(int node) {
+			while (!hasPending(node) && next < records) {
+				dispatch();
+			}
+			return hasPending(node) ? round(pending[node].peek()) : -1;
+		}
+
+		private boolean hasPending(int node) {
+			return node < pending.length && pending[node] != null && !pending[node].isEmpty();
+		}
+
+		/**
+		 * Moves the next record to the queue of its node.
+		 */
+		private void dispatch() {
+			int id = node(next);
+			if (id >= pending.length) {
+				IntQueue[] grown = new IntQueue[Math.max(2 * pending.length, id + 1)];
+				System.arraycopy(pending, 0, grown, 0, pending.length);
+				pending = grown;
+			}
+			if (pending[id] == null) {
+				pending[id] = new IntQueue(4);
+			}
+			pending[id].add(next);
+			next++;
+		}
+
+		private int offset(int record) {
+			return (record % SEGMENT_RECORDS) * RECORD_SIZE;
+		}
+
+		private MappedByteBuffer segment(int record) {
+			return segments[record / SEGMENT_RECORDS];
+		}
+
+		public int round(int record) {
+			return segment(record).getInt(offset(record));
+		}
+
+		public int node(int record) {
+			return segment(record).getInt(offset(record) + 4);
+		}
+
+		public int lock(int record) {
+			return segment(record).getInt(offset(record) + 8) & ~SHARED;
+		}
+
+		public boolean shared(int record) {
+			return (segment(record).getInt(offset(record) + 8) & SHARED) != 0;
+		}
+
+		public double hold(int record) {
+			return segment(record).getDouble(offset(record) + 12);
+		}
+	}
+
+	/**
+	 * Converts a trace to CSV.
+	 */
+	public static void toCSV(String fileName, PrintStream out) throws IOException {
+		Replay trace = new Replay(fileName);
+		out.println(HEADER);
+		StringBuilder line = new StringBuilder();
+		for (int i = 0; i < trace.records; i++) {
+			line.setLength(0);
+			line.append(trace.round(i)).append(',')
+				.append(trace.node(i)).append(',')
+				.append(trace.lock(i)).append(',')
+				.append(trace.shared(i)).append(',')
+				.append(trace.hold(i));
+			out.println(line);
+		}
+	}
+
+	/**
+	 * Prints the trace given as first argument as CSV.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 1) {
+			System.err.println("Usage: WorkloadTrace <trace file>");
+			System.exit(1);
+		}
+		toCSV(args[0], System.out);
+	}
+}
@@ -0,0 +1,73 @@
+/*
+ Copyright (c) 2007, Distributed Computing Group (DCG)
+                    ETH Zurich
+                    Switzerland
+                    dcg.ethz.ch
+
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ - Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+ - Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the
+   distribution.
+
+ - Neither the name 'Sinalgo' nor the names of its contributors may be
+   used to endorse or promote products derived from this software
+   without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package projects.mutualExclusion.benchmarks;
+
+import projects.mutualExclusion.nodes.messages.MutexMessage;
+import projects.mutualExclusion.nodes.nodeImplementations.SandersNode;
+import sinalgo.nodes.Node;
+import sinalgo.nodes.messages.Message;
+
+/**
+ * A SandersNode that runs without the simulation framework: messages are
+ * handed to the node directly, sent messages are only counted and the CS is
+ * never left by a timer.
+ */
+public class BenchNode extends SandersNode {
+
+	/** The number of messages this node sent. */
+	public long sent = 0;
+	/** The node this node sent its last vote to. */
+	public Node lastVoted = null;
+
+	/**
+	 * Hands a message to the node as if it was received from sender.
+	 */
+	public void receive(Message msg, Node sender) {
+		deliver(msg, sender);
+	}
+
+	@Override
+	protected void transmit(Message msg, Node target) {
+		sent++;
+		if (((MutexMessage) msg).type == MutexMessage.YES) {
+			lastVoted = target;
+		}
+	}
+
+	@Override
+	protected void startLeaveTimer(double time) {}
+}
@@ -0,0 +1,376 @@
+/*
+ Copyright (c) 2007, Distributed Computing Group (DCG)
+                    ETH Zurich
+                    Switzerland
+                    dcg.ethz.ch
+
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ - Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+ - Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the
+   distribution.
+
+ - Neither the name 'Sinalgo' nor the names of its contributors may be
+   used to endorse or promote products derived from this software
+   without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package projects.mutualExclusion.benchmarks;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Random;
+
+import projects.mutualExclusion.CustomGlobal;
+import projects.mutualExclusion.Statistics;
+import projects.mutualExclusion.models.connectivityModels.Grid;
+import projects.mutualExclusion.models.connectivityModels.Majority;
+import projects.mutualExclusion.models.connectivityModels.ProjectivePlane;
+import projects.mutualExclusion.models.connectivityModels.QuorumSystem;
+import projects.mutualExclusion.models.connectivityModels.TreeQuorum;
+import projects.mutualExclusion.nodes.messages.InqMessage;
+import projects.mutualExclusion.nodes.messages.ReleaseMessage;
+import projects.mutualExclusion.nodes.messages.ReqMessage;
+import projects.mutualExclusion.nodes.messages.RequestQueue;
+import projects.mutualExclusion.nodes.messages.YesMessage;
+import projects.mutualExclusion.nodes.nodeImplementations.MutexNode.State;
+import sinalgo.configuration.CorruptConfigurationEntryException;
+import sinalgo.configuration.WrongConfigurationException;
+import sinalgo.nodes.Node;
+import sinalgo.nodes.messages.Message;
+import sinalgo.runtime.Runtime;
+
+/**
+ * Micro benchmarks of the hot paths of the simulation: message dispatch,
+ * vote handling under contention, the deferred request queue, the
+ * connectivity test and the tables of the quorum systems and the end of a
+ * round.
+ * <p>
+ * The benchmarks run without the GUI and without the simulation runtime
+ * (see {@link BenchNode}). Each benchmark is warmed up and then measured in
+ * several iterations. Besides the time per operation, the bytes allocated per
+ * operation (as reported by the JVM for the current thread) and the time
+ * spent in garbage collection are reported.
+ * <p>
+ * Usage: <code>Benchmarks [name filter]</code>
+ */
+public class Benchmarks {
+
+	private static final int WARMUP_ITERATIONS = 5;
+	private static final int ITERATIONS = 10;
+	private static final long ITERATION_NANOS = 200 * 1000 * 1000;
+
+	/** Results are accumulated here, such that the JIT cannot drop the work. */
+	public static volatile long sink;
+
+	/**
+	 * A single benchmark.
+	 */
+	private abstract static class Benchmark {
+		final String name;
+		/** The number of operations performed by one call of run(). */
+		final int operations;
+
+		Benchmark(String name, int operations) {
+			this.name = name;
+			this.operations = operations;
+		}
+
+		abstract long run();
+	}
+
+	/**
+	 * Messages of all types delivered to a node that is not in the CS.
+	 */
+	private static Benchmark dispatch() {
+		final BenchNode node = node();
+		final BenchNode sender = node();
+		final Message[] messages = {
+			new ReqMessage(1, 0, ReqMessage.EXCLUSIVE), ReleaseMessage.INSTANCE, YesMessage.INSTANCE, new InqMessage(-1, 0, 0, 0),
+		};
+		return new Benchmark("SandersNode.handleMessages dispatch", 1024) {
+			long run() {
+				for (int i = 0; i < operations; i++) {
+					node.receive(messages[i & 3], sender);
+				}
+				return node.sent;
+			}
+		};
+	}
+
+	/**
+	 * A voter receives requests from many nodes in random timestamp order and
+	 * then one release per request from the node holding the vote, such that
+	 * every request is queued and granted once.
+	 */
+	private static Benchmark contention(final int requesters) {
+		final BenchNode voter = node();
+		final BenchNode[] nodes = new BenchNode[requesters];
+		final ReqMessage[] requests = new ReqMessage[requesters];
+		Random random = new Random(1);
+		for (int i = 0; i < requesters; i++) {
+			nodes[i] = node();
+			requests[i] = new ReqMessage(random.nextInt(requesters), 0, ReqMessage.EXCLUSIVE);
+		}
+		return new Benchmark("SandersNode.handleReq/castVote, " + requesters + " requesters", 2 * requesters) {
+			long run() {
+				for (int i = 0; i < requesters; i++) {
+					voter.receive(requests[i], nodes[i]);
+				}
+				for (int i = 0; i < requesters; i++) {
+					voter.receive(ReleaseMessage.INSTANCE, voter.lastVoted);
+				}
+				return voter.sent;
+			}
+		};
+	}
+
+	/**
+	 * Random requests added to and removed from the deferred request queue.
+	 */
+	private static Benchmark requestQueue(final int size) {
+		final RequestQueue queue = new RequestQueue(size);
+		final int[] timestamps = new int[size];
+		Random random = new Random(1);
+		for (int i = 0; i < size; i++) {
+			timestamps[i] = random.nextInt(1000);
+		}
+		return new Benchmark("RequestQueue add/poll, " + size + " entries", 2 * size) {
+			long run() {
+				long sum = 0;
+				for (int i = 0; i < size; i++) {
+					queue.add(timestamps[i], i + 1);
+				}
+				while (!queue.isEmpty()) {
+					sum += queue.poll();
+				}
+				return sum;
+			}
+		};
+	}
+
+	/**
+	 * A Grid whose connectivity test the benchmarks can call.
+	 */
+	private static class BenchGrid extends Grid {
+		BenchGrid() throws CorruptConfigurationEntryException {
+		}
+
+		boolean connected(Node from, Node to) {
+			return isConnected(from, to);
+		}
+	}
+
+	/**
+	 * The row and column test of the baseline Grid.isConnected, which the
+	 * quorum index replaced, for all pairs of nodes. Kept as the reference
+	 * for {@link #gridIsConnected}.
+	 */
+	private static Benchmark gridFormula(final int n) {
+		return new Benchmark("Grid all-pairs formula (baseline, inlined), " + n + " nodes", n * n) {
+			long run() {
+				long edges = 0;
+				int size = (int) Math.sqrt(n);
+				for (int from = 1; from <= n; from++) {
+					for (int to = 1; to <= n; to++) {
+						if ((from - 1) % size == (to - 1) % size || (from - 1) / size == (to - 1) / size) {
+							edges++;
+						}
+					}
+				}
+				return edges;
+			}
+		};
+	}
+
+	/**
+	 * Grid.isConnected, the test of the framework, for all pairs of the
+	 * nodes registered with the runtime.
+	 */
+	private static Benchmark gridIsConnected(final BenchNode[] nodes) throws CorruptConfigurationEntryException {
+		final BenchGrid grid = new BenchGrid();
+		final int n = nodes.length;
+		return new Benchmark("Grid all-pairs isConnected, " + n + " nodes", n * n) {
+			long run() {
+				long edges = 0;
+				for (int i = 0; i < n; i++) {
+					for (int j = 0; j < n; j++) {
+						if (grid.connected(nodes[i], nodes[j])) {
+							edges++;
+						}
+					}
+				}
+				return edges;
+			}
+		};
+	}
+
+	/**
+	 * Grid.updateConnections, as called by the framework for every node.
+	 */
+	private static Benchmark gridUpdateConnections(final BenchNode[] nodes) throws CorruptConfigurationEntryException {
+		final BenchGrid grid = new BenchGrid();
+		return new Benchmark("Grid updateConnections, " + nodes.length + " nodes", nodes.length) {
+			long run() {
+				long changed = 0;
+				try {
+					for (int i = 0; i < nodes.length; i++) {
+						if (grid.updateConnections(nodes[i])) {
+							changed++;
+						}
+					}
+				} catch (WrongConfigurationException e) {
+					throw new IllegalStateException(e);
+				}
+				return changed;
+			}
+		};
+	}
+
+	/**
+	 * The construction of the membership table of a quorum system.
+	 */
+	private static Benchmark quorums(final QuorumSystem system, final int n) {
+		return new Benchmark(system.getClass().getSimpleName() + " quorum table, " + n + " nodes", 1) {
+			long run() {
+				return system.buildQuorums(n).length;
+			}
+		};
+	}
+
+	/**
+	 * The bookkeeping of a round: state changes, messages and
+	 * CustomGlobal.postRound, without the CSV log and the metrics file.
+	 */
+	private static Benchmark postRound() {
+		final CustomGlobal global = new CustomGlobal();
+		return new Benchmark("CustomGlobal.postRound with the statistics of a round", 1) {
+			long run() {
+				Statistics.stateChanged(State.NOT_IN_CS, State.WAITING);
+				Statistics.messagesSent(10);
+				Statistics.stateChanged(State.WAITING, State.IN_CS);
+				Statistics.csEntered(5, 0);
+				Statistics.stateChanged(State.IN_CS, State.NOT_IN_CS);
+				Statistics.csLeft(3);
+				global.postRound();
+				return Statistics.count(State.IN_CS) + Statistics.messages();
+			}
+		};
+	}
+
+	private static BenchNode node() {
+		BenchNode node = new BenchNode();
+		node.init();
+		return node;
+	}
+
+	/**
+	 * @return n nodes registered with the runtime, such that the quorum
+	 * systems build their tables from them.
+	 */
+	private static BenchNode[] registeredNodes(int n) {
+		BenchNode[] nodes = new BenchNode[n];
+		for (int i = 0; i < n; i++) {
+			nodes[i] = node();
+			Runtime.nodes.addNode(nodes[i]);
+		}
+		return nodes;
+	}
+
+	private static void measure(Benchmark benchmark) {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		com.sun.management.ThreadMXBean allocation = threads instanceof com.sun.management.ThreadMXBean ?
+				(com.sun.management.ThreadMXBean) threads : null;
+		long thread = Thread.currentThread().getId();
+
+		for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+			iteration(benchmark);
+		}
+		long operations = 0;
+		long nanos = 0;
+		long bytes = allocation == null ? 0 : allocation.getThreadAllocatedBytes(thread);
+		long gcMillis = gcMillis();
+		for (int i = 0; i < ITERATIONS; i++) {
+			long start = System.nanoTime();
+			operations += iteration(benchmark);
+			nanos += System.nanoTime() - start;
+		}
+		gcMillis = gcMillis() - gcMillis;
+		String allocated = "n/a";
+		if (allocation != null) {
+			bytes = allocation.getThreadAllocatedBytes(thread) - bytes;
+			allocated = String.format("%.1f", (double) bytes / operations);
+		}
+		System.out.println(String.format("%-60s %12.1f ns/op %10s B/op %6d ms gc",
+				benchmark.name, (double) nanos / operations, allocated, gcMillis));
+	}
+
+	/**
+	 * Runs the benchmark for about ITERATION_NANOS.
+	 * @return The number of operations performed.
+	 */
+	private static long iteration(Benchmark benchmark) {
+		long end = System.nanoTime() + ITERATION_NANOS;
+		long operations = 0;
+		long result = 0;
+		do {
+			result += benchmark.run();
+			operations += benchmark.operations;
+		} while (System.nanoTime() < end);
+		sink += result;
+		return operations;
+	}
+
+	private static long gcMillis() {
+		long millis = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			millis += Math.max(0, gc.getCollectionTime());
+		}
+		return millis;
+	}
+
+	public static void main(String[] args) throws Exception {
+		BenchNode[] registered = registeredNodes(1000);
+		Benchmark[] benchmarks = {
+			dispatch(),
+			contention(20),
+			contention(200),
+			requestQueue(20),
+			requestQueue(200),
+			gridFormula(1000),
+			gridIsConnected(registered),
+			gridUpdateConnections(registered),
+			quorums(new Grid(), 10000),
+			quorums(new ProjectivePlane(), 10000),
+			quorums(new TreeQuorum(), 10000),
+			quorums(new Majority(), 1000),
+			postRound(),
+		};
+		String filter = args.length > 0 ? args[0] : "";
+		for (Benchmark benchmark : benchmarks) {
+			if (benchmark.name.contains(filter)) {
+				measure(benchmark);
+			}
+		}
+	}
+}
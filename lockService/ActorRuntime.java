@@ -0,0 +1,245 @@
+/*
+ Copyright (c) 2007, Distributed Computing Group (DCG)
+                    ETH Zurich
+                    Switzerland
+                    dcg.ethz.ch
+
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ - Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+ - Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the
+   distribution.
+
+ - Neither the name 'Sinalgo' nor the names of its contributors may be
+   used to endorse or promote products derived from this software
+   without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package projects.mutualExclusion.lockService;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import projects.mutualExclusion.models.connectivityModels.QuorumSystem;
+
+/**
+ * Runs every member of the vote protocol as an actor, to expose the
+ * protocol to real concurrency rather than the interleavings of the
+ * simulation.
+ * <p>
+ * An actor owns a {@link VoteProtocol} and a {@link Mailbox}. It is not a
+ * thread: the sender that finds the mailbox empty hands the actor to a
+ * fork-join pool, which runs it until the mailbox is empty or BATCH
+ * messages are handled. So a JVM holds 100k actors on a few threads. The
+ * actors run in parallel on the threads of the pool, and the messages of
+ * two actors race like on a network, though each channel stays FIFO.
+ * <p>
+ * Every actor requests a random lock exclusively as soon as it is idle. On
+ * entering, it counts itself as holder of the lock and leaves the CS with a
+ * message to itself, such that the CS spans the messages in its mailbox.
+ * A second holder is a violation of the mutual exclusion. The runtime
+ * reports the CS entries per second, the messages per entry and samples
+ * the depth of the mailboxes.
+ * <p>
+ * Usage: <code>ActorRuntime [actors] [threads] [seconds] [locks] [quorum system] [delay-optimal]</code>,
+ * by default <code>1000 (one per core) 10 1 Grid false</code>.
+ */
+public class ActorRuntime {
+
+	/** The messages an actor handles before it yields its thread. */
+	static final int BATCH = 64;
+
+	/** The types of the messages an actor sends itself to request the CS and to leave it. */
+	private static final int REQUEST = -1;
+	private static final int LEAVE = -2;
+
+	/** The mailbox depth sampling interval in milliseconds. */
+	private static final long SAMPLE_MILLIS = 100;
+
+	private final Actor[] actors;
+	private final ForkJoinPool pool;
+	/** The holders of every lock. */
+	private final AtomicInteger[] holders;
+	private final AtomicLong violations = new AtomicLong();
+	private volatile boolean running = true;
+
+	/**
+	 * A member of the vote protocol with a mailbox.
+	 */
+	private class Actor implements Runnable, VoteProtocol.Host {
+		final int id;
+		final int[] quorum;
+		final VoteProtocol protocol;
+		final Mailbox mailbox = new Mailbox();
+		final Random random;
+		/** The CS left and the messages sent while running, read after the pool stopped. */
+		long entries = 0;
+		long sent = 0;
+
+		Actor(int id, int locks, int[] quorum, boolean delayOptimal) {
+			this.id = id;
+			this.quorum = quorum;
+			protocol = new VoteProtocol(id, locks, true, 0, delayOptimal, false, this);
+			random = new Random(id);
+		}
+
+		/**
+		 * Requests a random lock.
+		 */
+		void request() {
+			protocol.request(random.nextInt(holders.length), false, quorum);
+		}
+
+		public void run() {
+			for (int i = 0; i < BATCH; i++) {
+				Mailbox.Entry m = mailbox.take();
+				if (m.type == REQUEST) {
+					request();
+				} else if (m.type == LEAVE) {
+					leave(m.lock);
+				} else {
+					protocol.receive(m.from, m.type, m.timestamp, m.clock, m.lock, m.mode);
+				}
+				if (mailbox.done() == 0) {
+					return;
+				}
+			}
+			// the mailbox is not empty, so no sender schedules the actor
+			pool.execute(this);
+		}
+
+		private void leave(int lock) {
+			holders[lock].decrementAndGet();
+			protocol.release();
+			if (running) {
+				entries++;
+				request();
+			}
+		}
+
+		public void send(int to, int type, int timestamp, int clock, int lock, int mode) {
+			if (running) {
+				sent++;
+			}
+			actors[to].deliver(id, type, timestamp, clock, lock, mode);
+		}
+
+		/**
+		 * Adds a message to the mailbox and schedules the actor if it was idle.
+		 */
+		void deliver(int from, int type, int timestamp, int clock, int lock, int mode) {
+			if (mailbox.offer(from, type, timestamp, clock, lock, mode)) {
+				pool.execute(this);
+			}
+		}
+
+		public void acquired() {
+			int lock = protocol.lock();
+			if (holders[lock].incrementAndGet() > 1) {
+				violations.incrementAndGet();
+			}
+			deliver(id, LEAVE, 0, 0, lock, 0);
+		}
+
+		public double now() {
+			return System.nanoTime() / 1e6;
+		}
+
+		public void recoverySent() {}
+
+		public void keptVoteReturned(double waited) {}
+	}
+
+	public ActorRuntime(int[][] quorums, int locks, int threads, boolean delayOptimal) {
+		pool = new ForkJoinPool(threads, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+		holders = new AtomicInteger[locks];
+		for (int i = 0; i < locks; i++) {
+			holders[i] = new AtomicInteger();
+		}
+		actors = new Actor[quorums.length];
+		for (int id = 0; id < quorums.length; id++) {
+			actors[id] = new Actor(id, locks, quorums[id], delayOptimal);
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		int n = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		int threads = args.length > 1 && Integer.parseInt(args[1]) > 0 ?
+				Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		double seconds = args.length > 2 ? Double.parseDouble(args[2]) : 10;
+		int locks = args.length > 3 ? Integer.parseInt(args[3]) : 1;
+		String system = args.length > 4 ? args[4] : "Grid";
+		boolean delayOptimal = args.length > 5 && Boolean.parseBoolean(args[5]);
+
+		QuorumSystem quorumSystem = QuorumSystem.forName(system);
+		long setup = System.nanoTime();
+		ActorRuntime runtime = new ActorRuntime(quorumSystem.buildQuorums(n), locks, threads, delayOptimal);
+		System.out.println(n + " actors (" + system + (delayOptimal ? ", delay-optimal" : "") + ") on " +
+				threads + " threads, " + locks + " locks, set up in " +
+				String.format("%.1f", (System.nanoTime() - setup) / 1e9) + " s");
+		runtime.run(seconds);
+	}
+
+	/**
+	 * Lets every actor request the CS for the given time and reports.
+	 */
+	public void run(double seconds) throws InterruptedException {
+		long start = System.nanoTime();
+		long end = start + (long) (seconds * 1e9);
+		for (Actor actor : actors) {
+			actor.deliver(actor.id, REQUEST, 0, 0, 0, 0);
+		}
+		long samples = 0;
+		long pendingSum = 0;
+		int maxDepth = 0;
+		while (System.nanoTime() < end) {
+			Thread.sleep(SAMPLE_MILLIS);
+			long pending = 0;
+			for (Actor actor : actors) {
+				int depth = actor.mailbox.depth();
+				pending += depth;
+				maxDepth = Math.max(maxDepth, depth);
+			}
+			pendingSum += pending;
+			samples++;
+		}
+		running = false;
+		double elapsed = (System.nanoTime() - start) / 1e9;
+		// the requests still waiting are served before the pool runs dry
+		pool.awaitQuiescence(1, TimeUnit.MINUTES);
+		pool.shutdown();
+		long entries = 0;
+		long sent = 0;
+		for (Actor actor : actors) {
+			entries += actor.entries;
+			sent += actor.sent;
+		}
+		System.out.println(String.format("CS entries/s: %.0f, messages / CS entry: %.1f",
+				entries / elapsed, (double) sent / Math.max(1, entries)));
+		System.out.println(String.format("mailbox depth: mean %.1f messages in all mailboxes, max %d in one",
+				samples == 0 ? 0.0 : (double) pendingSum / samples, maxDepth));
+		System.out.println("mutual exclusion violations: " + violations.get());
+	}
+}
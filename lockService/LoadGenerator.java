@@ -0,0 +1,146 @@
+/*
+ Copyright (c) 2007, Distributed Computing Group (DCG)
+                    ETH Zurich
+                    Switzerland
+                    dcg.ethz.ch
+
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ - Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+ - Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the
+   distribution.
+
+ - Neither the name 'Sinalgo' nor the names of its contributors may be
+   used to endorse or promote products derived from this software
+   without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package projects.mutualExclusion.lockService;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import projects.mutualExclusion.LatencyHistogram;
+import projects.mutualExclusion.models.connectivityModels.QuorumSystem;
+
+/**
+ * Runs a lock service in this JVM under load and reports the acquisitions
+ * per second and the latency of the acquisitions.
+ * <p>
+ * Every member serves the given number of clients, each in its own thread.
+ * A client acquires a random lock exclusively, releases it right away and
+ * starts over. The quorums are those of a quorum system of the connectivity
+ * models. Every lock counts its holders, such that a violation of the mutual
+ * exclusion is reported.
+ * <p>
+ * Usage: <code>LoadGenerator [queue|nio] [members] [clients per member] [seconds] [locks] [quorum system]</code>,
+ * by default <code>queue 16 2 10 1 Grid</code>.
+ */
+public class LoadGenerator {
+
+	public static void main(String[] args) throws Exception {
+		String transportName = args.length > 0 ? args[0] : "queue";
+		int members = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+		int clientsPerMember = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+		double seconds = args.length > 3 ? Double.parseDouble(args[3]) : 10;
+		final int locks = args.length > 4 ? Integer.parseInt(args[4]) : 1;
+		String system = args.length > 5 ? args[5] : "Grid";
+
+		Transport transport;
+		if (transportName.equalsIgnoreCase("queue")) {
+			transport = new QueueTransport();
+		} else if (transportName.equalsIgnoreCase("nio")) {
+			transport = new NioTransport();
+		} else {
+			throw new IllegalArgumentException("The transport must be queue or nio, not " + transportName);
+		}
+		int[][] quorums = QuorumSystem.forName(system).buildQuorums(members);
+
+		final LockService[] services = new LockService[members];
+		for (int id = 0; id < members; id++) {
+			services[id] = new LockService(id, locks, quorums[id], transport);
+		}
+		transport.start(services);
+		for (LockService service : services) {
+			service.start();
+		}
+
+		final AtomicInteger[] holders = new AtomicInteger[locks];
+		for (int i = 0; i < locks; i++) {
+			holders[i] = new AtomicInteger();
+		}
+		final AtomicLong violations = new AtomicLong();
+		final long end = System.nanoTime() + (long) (seconds * 1e9);
+		int clients = members * clientsPerMember;
+		final LatencyHistogram[] latencies = new LatencyHistogram[clients];
+		final long[] acquisitions = new long[clients];
+		Thread[] threads = new Thread[clients];
+		for (int c = 0; c < clients; c++) {
+			final int client = c;
+			final LockService service = services[c % members];
+			latencies[c] = new LatencyHistogram();
+			threads[c] = new Thread(new Runnable() {
+				public void run() {
+					Random random = new Random(client);
+					try {
+						while (System.nanoTime() < end) {
+							int lock = random.nextInt(locks);
+							long start = System.nanoTime();
+							service.acquire(lock, false);
+							// in microseconds
+							latencies[client].record((System.nanoTime() - start) / 1e3);
+							if (holders[lock].incrementAndGet() > 1) {
+								violations.incrementAndGet();
+							}
+							holders[lock].decrementAndGet();
+							service.release();
+							acquisitions[client]++;
+						}
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			}, "client-" + c);
+			threads[c].start();
+		}
+		long start = System.nanoTime();
+		long total = 0;
+		LatencyHistogram latency = new LatencyHistogram();
+		for (int c = 0; c < clients; c++) {
+			threads[c].join();
+			total += acquisitions[c];
+			latency.add(latencies[c]);
+		}
+		double elapsed = (System.nanoTime() - start) / 1e9;
+		for (LockService service : services) {
+			service.stop();
+		}
+		transport.close();
+
+		System.out.println(transportName + " transport, " + members + " members (" + system + "), " +
+				clients + " clients, " + locks + " locks, " + String.format("%.1f", elapsed) + " s");
+		System.out.println(String.format("acquisitions/s: %.0f", total / elapsed));
+		System.out.println("acquire latency (us): " + latency.summary());
+		System.out.println("mutual exclusion violations: " + violations.get());
+	}
+}
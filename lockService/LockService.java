@@ -0,0 +1,162 @@
+/*
+ Copyright (c) 2007, Distributed Computing Group (DCG)
+                    ETH Zurich
+                    Switzerland
+                    dcg.ethz.ch
+
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ - Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+ - Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the
+   distribution.
+
+ - Neither the name 'Sinalgo' nor the names of its contributors may be
+   used to endorse or promote products derived from this software
+   without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package projects.mutualExclusion.lockService;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+
+/**
+ * A member of a distributed lock service: runs the {@link VoteProtocol} of
+ * one member over a {@link Transport}, with a Lamport clock and without
+ * timeout.
+ * <p>
+ * The protocol runs on its own thread, which takes the received messages
+ * and the requests of the clients from the mailbox of the member. A member
+ * requests one lock at a time, so the clients of the same member take turns.
+ */
+public class LockService implements Transport.Receiver {
+
+	/** The types of the requests of the clients in the mailbox, besides the messages. */
+	private static final int ACQUIRE = -1;
+	private static final int RELEASE = -2;
+	private static final int STOP = -3;
+
+	public final int id;
+	private final int[] quorum;
+	private final Transport transport;
+	private final VoteProtocol protocol;
+	/** The messages and requests: sender, type, timestamp, clock, lock and mode. */
+	private final LinkedBlockingQueue<int[]> mailbox = new LinkedBlockingQueue<int[]>();
+	/** Taken by the client whose request the member serves. */
+	private final Semaphore turn = new Semaphore(1, true);
+	/** Released when the request of the client holds the lock. */
+	private final Semaphore granted = new Semaphore(0);
+	private Thread thread;
+
+	/**
+	 * @param id The ID of the member.
+	 * @param locks The number of locks.
+	 * @param quorum The IDs of the members whose votes a request needs.
+	 */
+	public LockService(int id, int locks, int[] quorum, Transport transport) {
+		this.id = id;
+		this.quorum = quorum;
+		this.transport = transport;
+		protocol = new VoteProtocol(id, locks, true, 0, false, false, new VoteProtocol.Host() {
+			public void send(int to, int type, int timestamp, int clock, int lock, int mode) {
+				LockService.this.transport.send(LockService.this.id, to, type, timestamp, clock, lock, mode);
+			}
+
+			public void acquired() {
+				granted.release();
+			}
+
+			public double now() {
+				return System.nanoTime() / 1e6;
+			}
+
+			public void recoverySent() {}
+
+			public void keptVoteReturned(double waited) {}
+		});
+	}
+
+	/**
+	 * Starts the thread of the member, after the transport.
+	 */
+	public void start() {
+		thread = new Thread(new Runnable() {
+			public void run() {
+				serve();
+			}
+		}, "lock-service-" + id);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Stops the thread of the member.
+	 */
+	public void stop() throws InterruptedException {
+		mailbox.add(new int[] {id, STOP, 0, 0, 0, 0});
+		thread.join();
+	}
+
+	public void receive(int from, int type, int timestamp, int clock, int lock, int mode) {
+		mailbox.add(new int[] {from, type, timestamp, clock, lock, mode});
+	}
+
+	/**
+	 * Waits until the member holds the lock for the calling client.
+	 */
+	public void acquire(int lock, boolean shared) throws InterruptedException {
+		turn.acquire();
+		mailbox.add(new int[] {id, ACQUIRE, 0, 0, lock, shared ? VoteProtocol.SHARED : VoteProtocol.EXCLUSIVE});
+		granted.acquire();
+	}
+
+	/**
+	 * Releases the lock the calling client holds, see {@link #acquire}.
+	 */
+	public void release() {
+		mailbox.add(new int[] {id, RELEASE, 0, 0, 0, 0});
+		turn.release();
+	}
+
+	private void serve() {
+		try {
+			while (true) {
+				int[] m = mailbox.take();
+				switch (m[1]) {
+					case STOP:
+						return;
+					case ACQUIRE:
+						protocol.request(m[4], m[5] == VoteProtocol.SHARED, quorum);
+						break;
+					case RELEASE:
+						protocol.release();
+						break;
+					default:
+						protocol.receive(m[0], m[1], m[2], m[3], m[4], m[5]);
+						break;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,116 @@
+/*
+ Copyright (c) 2007, Distributed Computing Group (DCG)
+                    ETH Zurich
+                    Switzerland
+                    dcg.ethz.ch
+
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ - Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+ - Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the
+   distribution.
+
+ - Neither the name 'Sinalgo' nor the names of its contributors may be
+   used to endorse or promote products derived from this software
+   without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package projects.mutualExclusion.lockService;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A lock-free mailbox for many senders and one receiver: a linked list
+ * whose senders swap in the tail and link the previous one (after Vyukov's
+ * MPSC queue). A message is a sender and the five fields of a message of
+ * the {@link VoteProtocol}.
+ * <p>
+ * The mailbox counts its messages. The count goes up after the message is
+ * linked, so the sender that finds the mailbox empty knows that the
+ * receiver has to be scheduled, and the receiver knows whether to go on.
+ */
+public class Mailbox {
+
+	/**
+	 * A message in the mailbox.
+	 */
+	static final class Entry {
+		int from;
+		int type;
+		int timestamp;
+		int clock;
+		int lock;
+		int mode;
+		volatile Entry next;
+	}
+
+	/** The last entry taken, whose next is the oldest message. Only used by the receiver. */
+	private Entry head = new Entry();
+	private final AtomicReference<Entry> tail = new AtomicReference<Entry>(head);
+	private final AtomicInteger depth = new AtomicInteger();
+
+	/**
+	 * Adds a message, from any thread.
+	 * @return True if the mailbox was empty.
+	 */
+	public boolean offer(int from, int type, int timestamp, int clock, int lock, int mode) {
+		Entry e = new Entry();
+		e.from = from;
+		e.type = type;
+		e.timestamp = timestamp;
+		e.clock = clock;
+		e.lock = lock;
+		e.mode = mode;
+		tail.getAndSet(e).next = e;
+		return depth.getAndIncrement() == 0;
+	}
+
+	/**
+	 * Takes the oldest message, only from the receiver and only if
+	 * {@link #depth()} counted it. It waits for a sender that swapped in the
+	 * tail before the message but did not link it yet.
+	 */
+	Entry take() {
+		Entry next;
+		while ((next = head.next) == null) {
+			Thread.yield();
+		}
+		head = next;
+		return next;
+	}
+
+	/**
+	 * Counts a taken message as handled.
+	 * @return The number of messages left.
+	 */
+	int done() {
+		return depth.decrementAndGet();
+	}
+
+	/**
+	 * @return The number of messages in the mailbox.
+	 */
+	public int depth() {
+		return depth.get();
+	}
+}
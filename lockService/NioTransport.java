@@ -0,0 +1,289 @@
+/*
+ Copyright (c) 2007, Distributed Computing Group (DCG)
+                    ETH Zurich
+                    Switzerland
+                    dcg.ethz.ch
+
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ - Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+ - Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the
+   distribution.
+
+ - Neither the name 'Sinalgo' nor the names of its contributors may be
+   used to endorse or promote products derived from this software
+   without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package projects.mutualExclusion.lockService;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Carries the messages over TCP on the loopback interface, with
+ * non-blocking sockets served by one selector thread.
+ * <p>
+ * Every member listens on its own port. The first message from one member
+ * to another opens a connection, which then carries all messages in this
+ * direction, such that the messages arrive in order. A message is a frame of
+ * FRAME_SIZE bytes: the sender and the five fields of the message. The
+ * sending thread writes the frame right away if the connection has nothing
+ * pending, otherwise the selector thread writes it when the socket can take
+ * it.
+ */
+public class NioTransport implements Transport {
+
+	/** The bytes of a frame: six ints. */
+	static final int FRAME_SIZE = 24;
+
+	/**
+	 * The connection of a sender to a receiver. The frames not written yet
+	 * are in pending, which is guarded by the connection.
+	 */
+	private static class Connection {
+		final SocketChannel channel;
+		ByteBuffer pending = ByteBuffer.allocate(64 * FRAME_SIZE);
+		/** Whether the selector thread writes the pending frames. */
+		boolean flushing = false;
+
+		Connection(SocketChannel channel) {
+			this.channel = channel;
+		}
+	}
+
+	/**
+	 * The incoming side of a connection, read by the selector thread.
+	 */
+	private static class Inbound {
+		final int member;
+		final ByteBuffer buffer = ByteBuffer.allocate(256 * FRAME_SIZE);
+
+		Inbound(int member) {
+			this.member = member;
+		}
+	}
+
+	private Receiver[] receivers;
+	private Selector selector;
+	private InetSocketAddress[] addresses;
+	private final List<ServerSocketChannel> servers = new ArrayList<ServerSocketChannel>();
+	/** The connections by sender (upper half) and receiver (lower half). */
+	private final ConcurrentHashMap<Long, Connection> connections = new ConcurrentHashMap<Long, Connection>();
+	/** The connections the selector thread starts writing. */
+	private final ConcurrentLinkedQueue<Connection> flushes = new ConcurrentLinkedQueue<Connection>();
+	private Thread thread;
+	private volatile boolean running = false;
+
+	public void start(Receiver[] receivers) throws IOException {
+		this.receivers = receivers;
+		selector = Selector.open();
+		addresses = new InetSocketAddress[receivers.length];
+		InetAddress loopback = InetAddress.getLoopbackAddress();
+		for (int id = 0; id < receivers.length; id++) {
+			if (receivers[id] == null) {
+				continue;
+			}
+			ServerSocketChannel server = ServerSocketChannel.open();
+			server.bind(new InetSocketAddress(loopback, 0), 1024);
+			server.configureBlocking(false);
+			server.register(selector, SelectionKey.OP_ACCEPT, Integer.valueOf(id));
+			servers.add(server);
+			addresses[id] = (InetSocketAddress) server.getLocalAddress();
+		}
+		running = true;
+		thread = new Thread(new Runnable() {
+			public void run() {
+				try {
+					loop();
+				} catch (IOException e) {
+					if (running) {
+						throw new RuntimeException(e);
+					}
+				}
+			}
+		}, "nio-transport");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	public void send(int from, int to, int type, int timestamp, int clock, int lock, int mode) {
+		Connection c = connection(from, to);
+		synchronized (c) {
+			if (c.pending.remaining() < FRAME_SIZE) {
+				ByteBuffer grown = ByteBuffer.allocate(2 * c.pending.capacity());
+				c.pending.flip();
+				grown.put(c.pending);
+				c.pending = grown;
+			}
+			c.pending.putInt(from).putInt(type).putInt(timestamp).putInt(clock).putInt(lock).putInt(mode);
+			if (c.flushing) {
+				return;
+			}
+			try {
+				c.pending.flip();
+				c.channel.write(c.pending);
+				boolean rest = c.pending.hasRemaining();
+				c.pending.compact();
+				if (rest) {
+					c.flushing = true;
+					flushes.add(c);
+					selector.wakeup();
+				}
+			} catch (IOException e) {
+				throw new RuntimeException("Cannot send to member " + to, e);
+			}
+		}
+	}
+
+	/**
+	 * @return The connection from one member to another, opened on first use.
+	 */
+	private Connection connection(int from, int to) {
+		Long key = Long.valueOf(((long) from << 32) | (to & 0xFFFFFFFFL));
+		Connection c = connections.get(key);
+		if (c == null) {
+			try {
+				SocketChannel channel = SocketChannel.open(addresses[to]);
+				channel.socket().setTcpNoDelay(true);
+				channel.configureBlocking(false);
+				c = new Connection(channel);
+			} catch (IOException e) {
+				throw new RuntimeException("Cannot connect to member " + to, e);
+			}
+			// only the sending thread of a member opens its connections
+			connections.put(key, c);
+		}
+		return c;
+	}
+
+	private void loop() throws IOException {
+		while (running) {
+			selector.select();
+			Connection c;
+			while ((c = flushes.poll()) != null) {
+				SelectionKey key = c.channel.keyFor(selector);
+				if (key == null) {
+					c.channel.register(selector, SelectionKey.OP_WRITE, c);
+				} else {
+					key.interestOps(SelectionKey.OP_WRITE);
+				}
+			}
+			Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+			while (keys.hasNext()) {
+				SelectionKey key = keys.next();
+				keys.remove();
+				if (!key.isValid()) {
+					continue;
+				}
+				if (key.isAcceptable()) {
+					SocketChannel channel = ((ServerSocketChannel) key.channel()).accept();
+					if (channel != null) {
+						channel.socket().setTcpNoDelay(true);
+						channel.configureBlocking(false);
+						channel.register(selector, SelectionKey.OP_READ, new Inbound((Integer) key.attachment()));
+					}
+				} else if (key.isReadable()) {
+					read(key);
+				} else if (key.isWritable()) {
+					write(key);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Hands the complete frames that arrived on a connection to the receiver.
+	 */
+	private void read(SelectionKey key) throws IOException {
+		Inbound in = (Inbound) key.attachment();
+		SocketChannel channel = (SocketChannel) key.channel();
+		int n = channel.read(in.buffer);
+		if (n < 0) {
+			key.cancel();
+			channel.close();
+			return;
+		}
+		ByteBuffer b = in.buffer;
+		b.flip();
+		Receiver receiver = receivers[in.member];
+		while (b.remaining() >= FRAME_SIZE) {
+			receiver.receive(b.getInt(), b.getInt(), b.getInt(), b.getInt(), b.getInt(), b.getInt());
+		}
+		b.compact();
+	}
+
+	/**
+	 * Writes the pending frames of a connection that the sender could not write.
+	 */
+	private void write(SelectionKey key) throws IOException {
+		Connection c = (Connection) key.attachment();
+		synchronized (c) {
+			c.pending.flip();
+			c.channel.write(c.pending);
+			boolean rest = c.pending.hasRemaining();
+			c.pending.compact();
+			if (!rest) {
+				c.flushing = false;
+				key.interestOps(0);
+			}
+		}
+	}
+
+	public void close() {
+		running = false;
+		if (selector == null) {
+			return;
+		}
+		selector.wakeup();
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		try {
+			for (Connection c : connections.values()) {
+				c.channel.close();
+			}
+			for (ServerSocketChannel server : servers) {
+				server.close();
+			}
+			for (SelectionKey key : selector.keys()) {
+				key.channel().close();
+			}
+			selector.close();
+		} catch (IOException e) {
+			// closing anyway
+		}
+	}
+}
@@ -0,0 +1,252 @@
+/*
+ Copyright (c) 2007, Distributed Computing Group (DCG)
+                    ETH Zurich
+                    Switzerland
+                    dcg.ethz.ch
+
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ - Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+ - Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the
+   distribution.
+
+ - Neither the name 'Sinalgo' nor the names of its contributors may be
+   used to endorse or promote products derived from this software
+   without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package projects.mutualExclusion.lockService;
+
+import java.util.ArrayDeque;
+import java.util.Random;
+
+import projects.mutualExclusion.models.connectivityModels.QuorumSystem;
+
+/**
+ * Checks that the {@link VoteProtocol} recovers from lost messages without
+ * violating the mutual exclusion. The members send their messages over FIFO
+ * channels that lose a fraction of them, and every acquisition checks that
+ * no other member holds the lock.
+ * <p>
+ * A scripted run first replays a crossing that once broke the mutual
+ * exclusion: a voter resends its vote to a request that gives the vote back
+ * at the same time, and the request must not take the late vote. Then every
+ * random run requests the lock at random members, with the round clock and
+ * exclusive requests only.
+ * <p>
+ * Usage: <code>RecoveryCheck [runs] [members] [timeout] [loss] [quorum system]</code>,
+ * by default <code>20 31 15 0.1 ProjectivePlane</code>. The exit status is 1
+ * if the mutual exclusion was violated or the scripted request never got the
+ * lock.
+ */
+public class RecoveryCheck {
+
+	/** The rounds of a random run. */
+	private static final int ROUNDS = 2000;
+	/** The probability that an idle member requests the lock in a round. */
+	private static final double REQUEST_RATE = 0.02;
+	/** The longest delay of a message and the longest time in the CS, in rounds. */
+	private static final int MAX_DELAY = 5;
+	private static final int MAX_HOLD = 5;
+
+	private final VoteProtocol[] members;
+	/** The messages in transit by channel (sender * members + receiver): arrival, type, timestamp, clock, lock and mode. */
+	private final ArrayDeque<double[]>[] channels;
+	private final Random random;
+	private final double loss;
+	private double time = 0;
+	/** The members holding the lock, and the time each member leaves the CS. */
+	private int holders = 0;
+	private final double[] leaveTime;
+	private int violations = 0;
+	private long acquisitions = 0;
+
+	@SuppressWarnings("unchecked")
+	private RecoveryCheck(int n, double timeout, double loss, long seed) {
+		this.loss = loss;
+		random = new Random(seed);
+		members = new VoteProtocol[n];
+		channels = new ArrayDeque[n * n];
+		leaveTime = new double[n];
+		for (int i = 0; i < n; i++) {
+			members[i] = new VoteProtocol(i, 1, false, timeout, false, false, new Member(i));
+		}
+	}
+
+	/**
+	 * Connects a member to the channels.
+	 */
+	private class Member implements VoteProtocol.Host {
+		private final int id;
+
+		Member(int id) {
+			this.id = id;
+		}
+
+		public void send(int to, int type, int timestamp, int clock, int lock, int mode) {
+			if (loss > 0 && random.nextDouble() < loss) {
+				return;
+			}
+			int channel = id * members.length + to;
+			if (channels[channel] == null) {
+				channels[channel] = new ArrayDeque<double[]>();
+			}
+			double arrival = time + 1 + random.nextInt(MAX_DELAY);
+			if (!channels[channel].isEmpty()) {
+				arrival = Math.max(arrival, channels[channel].peekLast()[0]);
+			}
+			channels[channel].add(new double[] {arrival, type, timestamp, clock, lock, mode});
+		}
+
+		public void acquired() {
+			acquisitions++;
+			if (++holders > 1) {
+				violations++;
+				System.out.println("Member " + id + " acquired the lock at time " + time + " while another member holds it");
+			}
+			leaveTime[id] = time + 1 + random.nextInt(MAX_HOLD);
+		}
+
+		public double now() {
+			return time;
+		}
+
+		public void recoverySent() {}
+
+		public void keptVoteReturned(double waited) {}
+	}
+
+	/**
+	 * Delivers or drops the oldest message on a channel.
+	 */
+	private void deliver(int from, int to, boolean lost) {
+		double[] m = channels[from * members.length + to].poll();
+		if (!lost) {
+			members[to].receive(from, (int) m[1], (int) m[2], (int) m[3], (int) m[4], (int) m[5]);
+		}
+	}
+
+	/**
+	 * Delivers the messages that arrived by now.
+	 */
+	private void deliverArrived() {
+		for (int c = 0; c < channels.length; c++) {
+			ArrayDeque<double[]> channel = channels[c];
+			while (channel != null && !channel.isEmpty() && channel.peek()[0] <= time) {
+				deliver(c / members.length, c % members.length, false);
+			}
+		}
+	}
+
+	private void release(int member) {
+		holders--;
+		members[member].release();
+	}
+
+	/**
+	 * Runs the members for the given rounds.
+	 */
+	private void run(int[][] quorums, int rounds) {
+		for (int round = 1; round <= rounds; round++) {
+			time = round;
+			for (VoteProtocol member : members) {
+				member.setRound(round);
+			}
+			deliverArrived();
+			for (int i = 0; i < members.length; i++) {
+				VoteProtocol member = members[i];
+				member.timeout();
+				if (member.phase() == VoteProtocol.HELD && leaveTime[i] <= time) {
+					release(i);
+				} else if (member.phase() == VoteProtocol.IDLE && random.nextDouble() < REQUEST_RATE) {
+					member.request(0, false, quorums[i]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Replays the crossing of a resent vote and the relinquish of the same
+	 * vote: member 0 asks the voter 1 and member 3, member 2 only the voter.
+	 * @return True if the mutual exclusion held and member 0 got the lock in the end.
+	 */
+	private static boolean crossing() {
+		RecoveryCheck check = new RecoveryCheck(4, 15, 0, 0);
+		VoteProtocol[] m = check.members;
+		check.time = 1;
+		m[0].setRound(1);
+		m[0].request(0, false, new int[] {1, 3});
+		check.deliver(0, 3, true);
+		check.deliver(0, 1, false);
+		// the vote for member 0 is lost
+		check.deliver(1, 0, true);
+		// member 2 requests with an older timestamp, the voter inquires
+		m[2].request(0, false, new int[] {1});
+		check.deliver(2, 1, false);
+		// member 0 resends its request before it handles the inquiry
+		check.time = 16;
+		m[0].timeout();
+		check.deliver(1, 0, false);
+		// the voter resends its vote for the resent request, then takes it back
+		check.deliver(0, 1, false);
+		check.deliver(0, 1, false);
+		// the late vote crosses the relinquish, member 2 gets the vote
+		check.deliver(1, 0, false);
+		check.deliver(1, 2, false);
+		check.deliver(0, 3, false);
+		check.deliver(3, 0, false);
+		if (m[2].phase() == VoteProtocol.HELD) {
+			check.release(2);
+		}
+		for (int round = 17; round < 100 && m[0].phase() != VoteProtocol.HELD; round++) {
+			check.time = round;
+			check.deliverArrived();
+			m[0].timeout();
+		}
+		return check.violations == 0 && m[0].phase() == VoteProtocol.HELD;
+	}
+
+	public static void main(String[] args) throws Exception {
+		int runs = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+		int n = args.length > 1 ? Integer.parseInt(args[1]) : 31;
+		double timeout = args.length > 2 ? Double.parseDouble(args[2]) : 15;
+		double loss = args.length > 3 ? Double.parseDouble(args[3]) : 0.1;
+		String system = args.length > 4 ? args[4] : "ProjectivePlane";
+
+		boolean failed = !crossing();
+		System.out.println("crossing of a resent vote and its relinquish: " + (failed ? "FAILED" : "ok"));
+		int[][] quorums = QuorumSystem.forName(system).buildQuorums(n);
+		long acquisitions = 0;
+		for (int seed = 1; seed <= runs; seed++) {
+			RecoveryCheck check = new RecoveryCheck(n, timeout, loss, seed);
+			check.run(quorums, ROUNDS);
+			acquisitions += check.acquisitions;
+			if (check.violations > 0) {
+				System.out.println("seed " + seed + ": " + check.violations + " violations of the mutual exclusion");
+				failed = true;
+			}
+		}
+		System.out.println(runs + " runs, " + n + " members (" + system + "), timeout " + timeout + ", loss " + loss +
+				": " + acquisitions + " acquisitions, " + (failed ? "FAILED" : "ok"));
+		System.exit(failed ? 1 : 0);
+	}
+}
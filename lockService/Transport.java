@@ -0,0 +1,71 @@
+/*
+ Copyright (c) 2007, Distributed Computing Group (DCG)
+                    ETH Zurich
+                    Switzerland
+                    dcg.ethz.ch
+
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ - Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+ - Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the
+   distribution.
+
+ - Neither the name 'Sinalgo' nor the names of its contributors may be
+   used to endorse or promote products derived from this software
+   without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package projects.mutualExclusion.lockService;
+
+import java.io.IOException;
+
+/**
+ * Carries the messages of the {@link VoteProtocol} between the members of a
+ * lock service. A message is sent for a member from one thread at a time,
+ * and the messages between two members arrive in the order they were sent.
+ */
+public interface Transport {
+
+	/**
+	 * Receives the messages to a member. It may be called from any thread
+	 * of the transport.
+	 */
+	public interface Receiver {
+		void receive(int from, int type, int timestamp, int clock, int lock, int mode);
+	}
+
+	/**
+	 * Connects the members, before the first message is sent.
+	 * @param receivers The receiver of the messages to each member, by ID.
+	 */
+	void start(Receiver[] receivers) throws IOException;
+
+	/**
+	 * Sends a message, see {@link VoteProtocol.Host#send} for the fields.
+	 */
+	void send(int from, int to, int type, int timestamp, int clock, int lock, int mode);
+
+	/**
+	 * Disconnects the members.
+	 */
+	void close();
+}
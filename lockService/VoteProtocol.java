@@ -0,0 +1,980 @@
+/*
+ Copyright (c) 2007, Distributed Computing Group (DCG)
+                    ETH Zurich
+                    Switzerland
+                    dcg.ethz.ch
+
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ - Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+ - Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the
+   distribution.
+
+ - Neither the name 'Sinalgo' nor the names of its contributors may be
+   used to endorse or promote products derived from this software
+   without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package projects.mutualExclusion.lockService;
+
+import java.util.Arrays;
+
+import projects.mutualExclusion.nodes.messages.IntSet;
+import projects.mutualExclusion.nodes.messages.RequestQueue;
+
+/**
+ * The vote protocol of Sanders87 for one member of a quorum system,
+ * independent of how the messages travel. The SandersNode runs it in the
+ * simulation, the {@link LockService} over a {@link Transport}.
+ * <p>
+ * The member manages several independent locks and votes for one writer or
+ * for any number of readers of each lock (see SandersNode). It requests one
+ * lock at a time. Members are identified by non-negative IDs, and a message
+ * is a type and four integers, see {@link Host#send}. The messages to the
+ * member itself are handled without the host. The protocol relies on FIFO
+ * channels.
+ * <p>
+ * In the delay-optimal mode (after Cao and Singhal), a voter tells the
+ * exclusive holder of its vote which request is the next one (TRANSFER).
+ * When the holder leaves the CS, it passes the vote on to that request
+ * itself (PASS) and tells the voter (PASSED), instead of releasing the vote
+ * to the voter, which would then send it to the next request. This takes
+ * one message delay between two CS executions instead of two. Since the
+ * passed vote and the messages of the voter travel on different channels,
+ * a requester that is asked for a vote it did not get yet gives it back as
+ * soon as it gets it, and a voter that gets a release from a member it did
+ * not yet know to hold its vote counts the vote as released once it learns
+ * about it. The mode requires that no messages are lost.
+ * <p>
+ * In the lazy-release mode, an exclusive request keeps its votes when it
+ * leaves the CS, such that the next request of the member for the same
+ * lock enters the CS without a message. A voter that defers a request
+ * behind an exclusive holder asks it for the vote with a lazy inquiry,
+ * which the holder answers only once it does not use the vote: at once if
+ * it keeps the votes of a finished request, otherwise when it leaves the
+ * CS. The votes kept are released with the mode LAZY, such that the voter
+ * can report how long it waited for them. The mode requires that no
+ * messages are lost and cannot be combined with the delay-optimal mode.
+ * <p>
+ * With a timeout, a voter numbers the grants of its vote, and the vote, the
+ * inquiry for it and the messages that give it back carry the number of the
+ * grant. A voter only takes back the grant the message names, and a request
+ * ignores a vote of a grant it already gave back, such that a resent vote
+ * that crosses the relinquish of the same vote does not count twice.
+ * <p>
+ * The protocol is not thread-safe: the host calls it from one thread at a time.
+ */
+public class VoteProtocol {
+
+	/** The message types, the same as in MutexMessage. */
+	public static final int REQ = 0;
+	public static final int YES = 1;
+	public static final int INQ = 2;
+	public static final int RELINQUISH = 3;
+	public static final int RELEASE = 4;
+	public static final int TRANSFER = 12;
+	public static final int PASS = 13;
+	public static final int PASSED = 14;
+
+	/** The lock modes of a request. */
+	public static final int EXCLUSIVE = 0;
+	public static final int SHARED = 1;
+	/** The mode of a lazy inquiry and of the release of kept votes, see above. */
+	public static final int LAZY = 1;
+
+	/** The phases of the own request. */
+	public static final int IDLE = 0;
+	public static final int WAITING = 1;
+	public static final int HELD = 2;
+
+	/** The longest time between two resends of a request, in timeouts. */
+	static final int MAX_BACKOFF = 8;
+
+	/**
+	 * What the protocol needs from its environment.
+	 */
+	public interface Host {
+		/**
+		 * Sends a message to another member. Which fields a type uses:
+		 * <ul>
+		 * <li>REQ: the timestamp, the lock and the mode.</li>
+		 * <li>YES and RELEASE: the clock, the lock and the timestamp of the
+		 * request, which is -1 without a timeout (a RELEASE then refers to
+		 * whatever request of the sender holds the vote). The mode of a
+		 * RELEASE is LAZY for votes kept after the CS.</li>
+		 * <li>INQ: the timestamp, the clock, the lock and the mode, LAZY for
+		 * a lazy inquiry.</li>
+		 * <li>RELINQUISH: the timestamp, the clock and the lock.</li>
+		 * <li>With a timeout, the mode of YES, INQ, RELINQUISH and RELEASE is
+		 * the number of the grant of the vote, see above.</li>
+		 * <li>TRANSFER: the timestamp of the request holding the vote, the
+		 * clock, the lock and in the mode the member to pass the vote to, -1
+		 * for none.</li>
+		 * <li>PASS and PASSED: the clock, the lock and in the mode the voter
+		 * (PASS) or the member the vote was passed to (PASSED).</li>
+		 * </ul>
+		 * The clock is 0 unless the protocol runs a Lamport clock, the unused fields are 0.
+		 */
+		void send(int to, int type, int timestamp, int clock, int lock, int mode);
+
+		/**
+		 * Called when the own request collected all votes.
+		 */
+		void acquired();
+
+		/**
+		 * @return The current time, only used with a timeout or lazy release.
+		 */
+		double now();
+
+		/**
+		 * Called before a message is sent to recover from a lost message.
+		 */
+		void recoverySent();
+
+		/**
+		 * Called when a member gives back votes it kept after the CS (lazy
+		 * release), with the time since this voter asked for its vote.
+		 */
+		void keptVoteReturned(double waited);
+	}
+
+	/** The ID of this member. */
+	public final int id;
+	/** Whether every message carries the clock of its sender and the receiver merges it into its own clock. */
+	public final boolean lamportClock;
+	/**
+	 * The time without a vote after which a request is resent, and after
+	 * which a voter reminds the holder of its vote again, 0 if messages are
+	 * never lost.
+	 */
+	public final double timeout;
+	/** Whether the holder of a vote passes it on to the next request itself, see above. */
+	public final boolean delayOptimal;
+	/** Whether an exclusive request keeps its votes after the CS until a voter asks for them, see above. */
+	public final boolean lazyRelease;
+
+	private final Host host;
+
+	/**
+	 * The clock that timestamps the requests. It either counts the rounds
+	 * (see {@link #nextRound()}) or is a Lamport clock.
+	 */
+	int clock = 0;
+	/** The phase of the own request. */
+	int phase = IDLE;
+	/** The lock of the own request. */
+	int resource = 0;
+	/** Whether the own request is shared. */
+	boolean shared = false;
+	int votes = 0;
+	int myTS;
+	/** The members asked for their vote by the own request. */
+	int[] quorum = new int[0];
+	/** The IDs of the members that gave their vote to the own request, the first votes are valid. Only used with a timeout or delay-optimal. */
+	int[] voters = new int[0];
+	/** With a timeout: the grant of the vote of each voter, parallel to voters. */
+	int[] voterGrants = new int[0];
+	/** With a timeout: the latest grant of each member of the quorum that the own request gave back, 0 for none, parallel to quorum. */
+	int[] returnedGrants = new int[0];
+	/** Delay-optimal: the member to pass the vote of each voter on to, -1 for none, parallel to voters. */
+	int[] transfers = new int[0];
+	/** Delay-optimal: the voters that asked for a vote that did not arrive yet. */
+	IntSet earlyInquiries;
+	/** Delay-optimal, per lock: the members that released the vote before this voter learned that it was passed to them. */
+	IntSet[] earlyReleases;
+	/** Delay-optimal, per lock: the holder told about the next request, packed as in RequestQueue, and that request's member. */
+	long[] transferHolder;
+	int[] transferNext;
+	/** Lazy release: whether the finished own request keeps its votes. */
+	boolean kept;
+	/** Lazy release: whether a voter asked for its vote, such that the own request releases the votes when it leaves the CS. */
+	boolean releaseOnExit;
+	/** Lazy release: the messages the own request saved by entering with the votes kept, 0 if it asked for votes. */
+	int saved;
+	/** Lazy release, per lock: the time this member asked the exclusive holder for the vote, -1 if it did not. */
+	double[] inquiryTime;
+	/** The time the own request was sent or got its last vote. */
+	double lastProgress;
+	/** The time without a vote after which the own request is resent, doubled with every resend without an answer. */
+	double backoff;
+	/** The time the own request was resent first, -1 if it was not resent. */
+	double retransmitted = -1;
+	/** Per lock: the requests holding the vote of this member, packed as in RequestQueue, created on first use. */
+	long[][] holders;
+	/** Per lock: the number of requests holding the vote. */
+	int[] holderCount;
+	/** Per lock: whether this member asked the holder to give the vote back, parallel to holders. */
+	boolean[][] holderInquired;
+	/** Per lock: the earliest time the holder is reminded of the vote, parallel to holders. */
+	double[][] holderReminder;
+	/** With a timeout, per lock: the grant of the vote to each holder, parallel to holders. */
+	int[][] holderGrant;
+	/** With a timeout, per lock: the number of the last grant of the vote. */
+	int[] grants;
+	/** Per lock: whether the vote is held by readers. */
+	boolean[] sharedVote;
+	/**
+	 * The members whose last request is shared. A set rather than an array
+	 * by ID, such that a member of a large system only keeps the readers it
+	 * voted for.
+	 */
+	IntSet sharedRequest = new IntSet(4);
+	/** Per lock: the deferred requests, created when the first request is deferred. */
+	RequestQueue[] deferedQueue;
+
+	/**
+	 * @param id The ID of this member.
+	 * @param locks The number of locks.
+	 * @param lamportClock Whether the requests are timestamped by a Lamport
+	 * clock. Otherwise the host counts the rounds with {@link #nextRound()}.
+	 * @param timeout See {@link #timeout}.
+	 * @param delayOptimal See {@link #delayOptimal}, only without a timeout.
+	 * @param lazyRelease See {@link #lazyRelease}, only without a timeout
+	 * and not delay-optimal.
+	 */
+	public VoteProtocol(int id, int locks, boolean lamportClock, double timeout, boolean delayOptimal,
+			boolean lazyRelease, Host host) {
+		if ((delayOptimal || lazyRelease) && timeout > 0) {
+			throw new IllegalArgumentException("The delay-optimal and lazy-release modes do not recover from lost messages");
+		}
+		if (delayOptimal && lazyRelease) {
+			throw new IllegalArgumentException("The delay-optimal mode cannot be combined with lazy release");
+		}
+		this.id = id;
+		this.lamportClock = lamportClock;
+		this.timeout = timeout;
+		this.delayOptimal = delayOptimal;
+		this.lazyRelease = lazyRelease;
+		this.host = host;
+		holders = new long[locks][];
+		holderCount = new int[locks];
+		holderInquired = new boolean[locks][];
+		holderReminder = new double[locks][];
+		holderGrant = new int[locks][];
+		grants = new int[locks];
+		sharedVote = new boolean[locks];
+		deferedQueue = new RequestQueue[locks];
+		if (delayOptimal) {
+			earlyInquiries = new IntSet(4);
+			earlyReleases = new IntSet[locks];
+			transferHolder = new long[locks];
+			transferNext = new int[locks];
+			Arrays.fill(transferHolder, -1);
+		}
+		if (lazyRelease) {
+			inquiryTime = new double[locks];
+			Arrays.fill(inquiryTime, -1);
+		}
+	}
+
+	/**
+	 * Handles a message from another member, see {@link Host#send} for the fields.
+	 */
+	public void receive(int from, int type, int timestamp, int clock, int lock, int mode) {
+		if (lamportClock) {
+			this.clock = Math.max(this.clock, type == REQ ? timestamp : clock) + 1;
+		}
+		switch (type) {
+			case REQ:
+				handleReq(from, timestamp, lock, mode == SHARED);
+				break;
+			case YES:
+				handleYes(from, lock, timestamp, mode);
+				break;
+			case INQ:
+				handleInq(from, timestamp, lock, mode);
+				break;
+			case RELINQUISH:
+				handleRelinquish(from, timestamp, lock, mode);
+				break;
+			case RELEASE:
+				handleRelease(from, lock, timestamp, mode);
+				break;
+			case TRANSFER:
+				handleTransfer(from, timestamp, lock, mode);
+				break;
+			case PASS:
+				handlePass(lock, mode);
+				break;
+			case PASSED:
+				handlePassed(from, lock, mode);
+				break;
+		}
+	}
+
+	/**
+	 * Requests a lock from the given quorum. The member must be idle.
+	 * With lazy release, the lock may be acquired before this returns.
+	 */
+	public void request(int lock, boolean shared, int[] quorum) {
+		saved = 0;
+		if (kept) {
+			if (lock == resource && !shared && Arrays.equals(quorum, this.quorum)) {
+				// a REQ, a YES and a RELEASE for every other member
+				kept = false;
+				phase = HELD;
+				saved = 3 * (quorum.length - (contains(quorum, id) ? 1 : 0));
+				host.acquired();
+				return;
+			}
+			releaseKept();
+		}
+		releaseOnExit = false;
+		phase = WAITING;
+		resource = lock;
+		this.shared = shared;
+		this.quorum = quorum;
+		myTS = lamportClock ? ++clock : clock;
+		if ((timeout > 0 || delayOptimal) && voters.length < quorum.length) {
+			voters = new int[quorum.length];
+			transfers = new int[quorum.length];
+		}
+		if (timeout > 0) {
+			lastProgress = host.now();
+			backoff = timeout;
+			retransmitted = -1;
+			if (voterGrants.length < quorum.length) {
+				voterGrants = new int[quorum.length];
+				returnedGrants = new int[quorum.length];
+			}
+			Arrays.fill(returnedGrants, 0);
+		}
+		int mode = shared ? SHARED : EXCLUSIVE;
+		for (int i = 0; i < quorum.length; i++) {
+			send(quorum[i], REQ, myTS, 0, lock, mode);
+		}
+	}
+
+	/**
+	 * Releases the lock of the own request, which must hold it.
+	 */
+	public void release() {
+		phase = IDLE;
+		if (lazyRelease && !shared && !releaseOnExit) {
+			kept = true;
+			return;
+		}
+		if (delayOptimal) {
+			int held = votes;
+			votes = 0;
+			for (int i = 0; i < held; i++) {
+				int next = transfers[i];
+				if (next >= 0) {
+					send(next, PASS, -1, tick(), resource, voters[i]);
+					send(voters[i], PASSED, -1, tick(), resource, next);
+				} else {
+					send(voters[i], RELEASE, -1, tick(), resource, 0);
+				}
+			}
+			return;
+		}
+		int held = votes;
+		votes = 0;
+		if (timeout > 0) {
+			for (int i = 0; i < held; i++) {
+				send(voters[i], RELEASE, myTS, tick(), resource, voterGrants[i]);
+			}
+			return;
+		}
+		for (int i = 0; i < quorum.length; i++) {
+			send(quorum[i], RELEASE, -1, tick(), resource, 0);
+		}
+	}
+
+	/**
+	 * Lazy release: gives back the votes the finished own request kept.
+	 */
+	private void releaseKept() {
+		kept = false;
+		votes = 0;
+		for (int i = 0; i < quorum.length; i++) {
+			send(quorum[i], RELEASE, -1, tick(), resource, LAZY);
+		}
+	}
+
+	private static boolean contains(int[] ids, int id) {
+		for (int i = 0; i < ids.length; i++) {
+			if (ids[i] == id) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Counts a round, if the clock counts the rounds.
+	 */
+	public void nextRound() {
+		if (!lamportClock) {
+			clock++;
+		}
+	}
+
+	/**
+	 * Sets the clock to the given round, if the clock counts the rounds.
+	 */
+	public void setRound(int round) {
+		if (!lamportClock) {
+			clock = round;
+		}
+	}
+
+	/**
+	 * @return The phase of the own request.
+	 */
+	public int phase() {
+		return phase;
+	}
+
+	/**
+	 * @return The lock of the own request.
+	 */
+	public int lock() {
+		return resource;
+	}
+
+	/**
+	 * @return Whether the finished own request keeps its votes (lazy release).
+	 */
+	public boolean kept() {
+		return kept;
+	}
+
+	/**
+	 * @return The messages the own request saved by entering the CS with the
+	 * votes kept by the previous one, 0 if it asked for votes.
+	 */
+	public int saved() {
+		return saved;
+	}
+
+	/**
+	 * @return The number of votes the own request holds.
+	 */
+	public int votes() {
+		return votes;
+	}
+
+	/**
+	 * @return The timestamp of the own request.
+	 */
+	public int timestamp() {
+		return myTS;
+	}
+
+	/**
+	 * @return The time the own request was resent first, -1 if it was not resent.
+	 */
+	public double retransmitted() {
+		return retransmitted;
+	}
+
+	/**
+	 * @return The number of requests holding the vote for a lock.
+	 */
+	public int holderCount(int lock) {
+		return holderCount[lock];
+	}
+
+	/**
+	 * @return The i-th request holding the vote for a lock, packed as in RequestQueue.
+	 */
+	public long holder(int lock, int i) {
+		return holders[lock][i];
+	}
+
+	/**
+	 * @return Whether the i-th holder of the vote for a lock was asked to give it back.
+	 */
+	public boolean holderInquired(int lock, int i) {
+		return holderInquired[lock][i];
+	}
+
+	/**
+	 * Advances the Lamport clock for a send event.
+	 * @return The clock to piggyback on the message, 0 if the clock counts the rounds.
+	 */
+	private int tick() {
+		return lamportClock ? ++clock : 0;
+	}
+
+	private void send(int to, int type, int timestamp, int clock, int lock, int mode) {
+		if (to == id) {
+			// the member is part of its own quorum and votes for itself without a message
+			receive(id, type, timestamp, clock, lock, mode);
+		} else {
+			host.send(to, type, timestamp, clock, lock, mode);
+		}
+	}
+
+	/**
+	 * Sends a vote for the request with the given timestamp, with the given
+	 * grant if there is a timeout.
+	 */
+	private void sendYes(int to, int lock, int timestamp, int grant) {
+		if (timeout > 0) {
+			send(to, YES, timestamp, tick(), lock, grant);
+		} else {
+			send(to, YES, -1, tick(), lock, 0);
+		}
+	}
+
+	private void handleReq(int sender, int timestamp, int lock, boolean sharedReq) {
+		if (sharedReq) {
+			sharedRequest.add(sender);
+		} else {
+			sharedRequest.remove(sender);
+		}
+		long key = RequestQueue.key(timestamp, sender);
+		RequestQueue queue = deferedQueue[lock];
+		if (timeout > 0) {
+			// a resent request: the vote or the request may have been lost
+			for (int i = 0; i < holderCount[lock]; i++) {
+				if (holders[lock][i] == key) {
+					host.recoverySent();
+					sendYes(sender, lock, timestamp, holderGrant[lock][i]);
+					return;
+				}
+			}
+			if (queue != null && queue.contains(key)) {
+				remindHolders(lock);
+				return;
+			}
+		}
+		if (holderCount[lock] == 0 ||
+			(sharedReq && sharedVote[lock] && (queue == null || queue.isEmpty() || queue.peek() > key))) {
+			grant(lock, key);
+		} else {
+			defer(lock, timestamp, sender);
+			// ask the younger holders to give the vote back. Backwards, since an
+			// inquiry to this member itself removes its entry and moves the last one.
+			for (int i = holderCount[lock] - 1; i >= 0; i--) {
+				if (i >= holderCount[lock]) {
+					continue;
+				}
+				long holder = holders[lock][i];
+				if (!holderInquired[lock][i] && key < holder) {
+					holderInquired[lock][i] = true;
+					if (lazyRelease && inquiryTime[lock] < 0) {
+						inquiryTime[lock] = host.now();
+					}
+					send(RequestQueue.nodeId(holder), INQ, RequestQueue.timestamp(holder), tick(), lock,
+							timeout > 0 ? holderGrant[lock][i] : 0);
+				}
+			}
+			forwardHead(lock);
+			inquireLazily(lock);
+		}
+	}
+
+	/**
+	 * Gives the vote for a lock to a request.
+	 */
+	private void grant(int lock, long key) {
+		// the vote is updated before sending, the message may be delivered
+		// locally and change the vote again
+		hold(lock, key);
+		sendYes(RequestQueue.nodeId(key), lock, RequestQueue.timestamp(key), grants[lock]);
+	}
+
+	/**
+	 * Records that a request holds the vote for a lock.
+	 */
+	private void hold(int lock, long key) {
+		if (holders[lock] == null || holderCount[lock] == holders[lock].length) {
+			int length = holders[lock] == null ? 1 : 2 * holders[lock].length;
+			long[] h = new long[length];
+			boolean[] inq = new boolean[length];
+			double[] reminder = new double[length];
+			int[] grant = new int[length];
+			if (holders[lock] != null) {
+				System.arraycopy(holders[lock], 0, h, 0, holderCount[lock]);
+				System.arraycopy(holderInquired[lock], 0, inq, 0, holderCount[lock]);
+				System.arraycopy(holderReminder[lock], 0, reminder, 0, holderCount[lock]);
+				System.arraycopy(holderGrant[lock], 0, grant, 0, holderCount[lock]);
+			}
+			holders[lock] = h;
+			holderInquired[lock] = inq;
+			holderReminder[lock] = reminder;
+			holderGrant[lock] = grant;
+		}
+		holders[lock][holderCount[lock]] = key;
+		holderInquired[lock][holderCount[lock]] = false;
+		holderReminder[lock][holderCount[lock]] = timeout > 0 ? host.now() + timeout : 0;
+		holderGrant[lock][holderCount[lock]] = ++grants[lock];
+		holderCount[lock]++;
+		if (lazyRelease) {
+			inquiryTime[lock] = -1;
+		}
+		sharedVote[lock] = sharedRequest.contains(RequestQueue.nodeId(key));
+	}
+
+	/**
+	 * Takes the vote for a lock from a member.
+	 * @return False if the member does not hold the vote.
+	 */
+	private boolean revoke(int lock, int id) {
+		for (int i = 0; i < holderCount[lock]; i++) {
+			if (RequestQueue.nodeId(holders[lock][i]) == id) {
+				remove(lock, i);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Takes the vote for a lock from a request, with a timeout only the
+	 * vote of the given grant.
+	 * @return False if the request does not hold the vote.
+	 */
+	private boolean revokeRequest(int lock, long key, int grant) {
+		for (int i = 0; i < holderCount[lock]; i++) {
+			if (holders[lock][i] == key && (timeout == 0 || holderGrant[lock][i] == grant)) {
+				remove(lock, i);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void remove(int lock, int i) {
+		holderCount[lock]--;
+		holders[lock][i] = holders[lock][holderCount[lock]];
+		holderInquired[lock][i] = holderInquired[lock][holderCount[lock]];
+		holderReminder[lock][i] = holderReminder[lock][holderCount[lock]];
+		holderGrant[lock][i] = holderGrant[lock][holderCount[lock]];
+	}
+
+	private void handleRelinquish(int sender, int timestamp, int lock, int grant) {
+		// a duplicate relinquish after a timeout finds the vote already taken back
+		if (revokeRequest(lock, RequestQueue.key(timestamp, sender), grant)) {
+			defer(lock, timestamp, sender);
+			castVote(lock);
+		}
+	}
+
+	private void handleRelease(int sender, int lock, int timestamp, int mode) {
+		if (lazyRelease && mode == LAZY && holderCount[lock] == 1 && RequestQueue.nodeId(holders[lock][0]) == sender &&
+				inquiryTime[lock] >= 0) {
+			host.keptVoteReturned(host.now() - inquiryTime[lock]);
+		}
+		if (timestamp < 0) {
+			if (!revoke(lock, sender) && delayOptimal) {
+				// the vote was passed to the sender, which this voter learns later
+				if (earlyReleases[lock] == null) {
+					earlyReleases[lock] = new IntSet(4);
+				}
+				earlyReleases[lock].add(sender);
+				return;
+			}
+		} else if (!revokeRequest(lock, RequestQueue.key(timestamp, sender), mode)) {
+			return;
+		}
+		castVote(lock);
+	}
+
+	private void defer(int lock, int timestamp, int id) {
+		if (deferedQueue[lock] == null) {
+			deferedQueue[lock] = new RequestQueue(10);
+		}
+		deferedQueue[lock].add(timestamp, id);
+	}
+
+	/**
+	 * Gives the vote to the oldest deferred request, or to all oldest
+	 * readers, as far as the current holders allow.
+	 */
+	private void castVote(int lock) {
+		RequestQueue queue = deferedQueue[lock];
+		while (queue != null && !queue.isEmpty()) {
+			long req = queue.peek();
+			boolean sharedReq = sharedRequest.contains(RequestQueue.nodeId(req));
+			if (holderCount[lock] > 0 && !(sharedReq && sharedVote[lock])) {
+				break;
+			}
+			queue.poll();
+			grant(lock, req);
+			if (!sharedReq) {
+				break;
+			}
+		}
+		forwardHead(lock);
+		inquireLazily(lock);
+	}
+
+	/**
+	 * Lazy release: asks the exclusive holder of the vote for a lock to give
+	 * it back once it does not use it, if a request is deferred and the
+	 * holder was not asked yet.
+	 */
+	private void inquireLazily(int lock) {
+		if (!lazyRelease || holderCount[lock] != 1 || sharedVote[lock] || holderInquired[lock][0] ||
+				inquiryTime[lock] >= 0) {
+			return;
+		}
+		RequestQueue queue = deferedQueue[lock];
+		if (queue == null || queue.isEmpty()) {
+			return;
+		}
+		long holder = holders[lock][0];
+		inquiryTime[lock] = host.now();
+		send(RequestQueue.nodeId(holder), INQ, RequestQueue.timestamp(holder), tick(), lock, LAZY);
+	}
+
+	private void handleYes(int sender, int lock, int timestamp, int grant) {
+		if (timeout > 0) {
+			boolean current = timestamp == myTS && lock == resource;
+			if (!current || phase == IDLE) {
+				// the vote for a finished request, which was resent or whose release was lost
+				returnVote(lock, timestamp, sender, grant);
+				return;
+			}
+			if (phase == HELD || hasVoter(sender) || grant <= returnedGrants[indexOf(quorum, sender)]) {
+				// a resent vote, or one this request gave back and the voter took back
+				return;
+			}
+			voters[votes] = sender;
+			voterGrants[votes] = grant;
+			lastProgress = host.now();
+			backoff = timeout;
+		} else if (delayOptimal) {
+			voters[votes] = sender;
+			transfers[votes] = -1;
+		}
+		votes++;
+		if (votes == quorum.length) {
+			phase = HELD;
+			host.acquired();
+		}
+	}
+
+	private void handleInq(int sender, int timestamp, int lock, int mode) {
+		boolean current = timestamp == myTS && lock == resource;
+		if (lazyRelease && current) {
+			if (kept) {
+				releaseKept();
+				return;
+			}
+			if (phase != IDLE) {
+				releaseOnExit = true;
+			}
+			if (mode == LAZY) {
+				// a lazy inquiry never takes a vote from a request that uses it
+				return;
+			}
+		}
+		if (phase == WAITING && current) {
+			if (delayOptimal && !removeVoter(sender)) {
+				// the vote is passed to this member and did not arrive yet
+				earlyInquiries.add(sender);
+				return;
+			}
+			if (timeout == 0) {
+				votes--;
+				send(sender, RELINQUISH, myTS, tick(), resource, 0);
+				return;
+			}
+			// the inquiry names the current grant, the vote of an older one was taken back already
+			if (removeVoter(sender)) {
+				votes--;
+			}
+			int i = indexOf(quorum, sender);
+			returnedGrants[i] = Math.max(returnedGrants[i], mode);
+			send(sender, RELINQUISH, myTS, tick(), resource, mode);
+		} else if (timeout > 0 && !(phase == HELD && current)) {
+			// the voter still counts a vote that this member gave back
+			returnVote(lock, timestamp, sender, mode);
+		}
+	}
+
+	private void returnVote(int lock, int timestamp, int voter, int grant) {
+		host.recoverySent();
+		send(voter, RELEASE, timestamp, tick(), lock, grant);
+	}
+
+	private static int indexOf(int[] ids, int id) {
+		for (int i = 0; i < ids.length; i++) {
+			if (ids[i] == id) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private boolean hasVoter(int id) {
+		for (int i = 0; i < votes; i++) {
+			if (voters[i] == id) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean removeVoter(int id) {
+		for (int i = 0; i < votes; i++) {
+			if (voters[i] == id) {
+				voters[i] = voters[votes - 1];
+				transfers[i] = transfers[votes - 1];
+				if (timeout > 0) {
+					voterGrants[i] = voterGrants[votes - 1];
+				}
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Delay-optimal: tells the exclusive holder of the vote for a lock which
+	 * exclusive request is deferred first, if that changed.
+	 */
+	private void forwardHead(int lock) {
+		if (!delayOptimal) {
+			return;
+		}
+		long holder = -1;
+		int next = -1;
+		if (holderCount[lock] == 1 && !sharedVote[lock]) {
+			holder = holders[lock][0];
+			RequestQueue queue = deferedQueue[lock];
+			if (queue != null && !queue.isEmpty() && !sharedRequest.contains(RequestQueue.nodeId(queue.peek()))) {
+				next = RequestQueue.nodeId(queue.peek());
+			}
+		}
+		if (holder == transferHolder[lock] && next == transferNext[lock]) {
+			return;
+		}
+		boolean told = holder == transferHolder[lock] && transferNext[lock] >= 0;
+		transferHolder[lock] = holder;
+		transferNext[lock] = next;
+		if (holder >= 0 && (next >= 0 || told)) {
+			send(RequestQueue.nodeId(holder), TRANSFER, RequestQueue.timestamp(holder), tick(), lock, next);
+		}
+	}
+
+	/**
+	 * Delay-optimal: a voter names the request to pass its vote on to.
+	 */
+	private void handleTransfer(int voter, int timestamp, int lock, int next) {
+		// a transfer sent before the voter learned that the request gave the vote back is outdated
+		if (phase == IDLE || timestamp != myTS || lock != resource) {
+			return;
+		}
+		for (int i = 0; i < votes; i++) {
+			if (voters[i] == voter) {
+				transfers[i] = next;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Delay-optimal: the previous holder passed on the vote of a voter.
+	 */
+	private void handlePass(int lock, int voter) {
+		if (earlyInquiries.contains(voter)) {
+			// the voter asked for it back already
+			earlyInquiries.remove(voter);
+			send(voter, RELINQUISH, myTS, tick(), resource, 0);
+			return;
+		}
+		handleYes(voter, lock, -1, 0);
+	}
+
+	/**
+	 * Delay-optimal: the holder of the vote for a lock passed it on to next.
+	 */
+	private void handlePassed(int holder, int lock, int next) {
+		revoke(lock, holder);
+		long key = deferedQueue[lock].removeOldest(next);
+		IntSet released = earlyReleases[lock];
+		if (key < 0 || (released != null && released.contains(next))) {
+			if (released != null) {
+				released.remove(next);
+			}
+			castVote(lock);
+			return;
+		}
+		hold(lock, key);
+		RequestQueue queue = deferedQueue[lock];
+		if (!queue.isEmpty() && queue.peek() < key) {
+			holderInquired[lock][holderCount[lock] - 1] = true;
+			send(next, INQ, RequestQueue.timestamp(key), tick(), lock, 0);
+		}
+		forwardHead(lock);
+	}
+
+	/**
+	 * Resends the own request to the voters that did not answer, if it got
+	 * no vote for the backoff. Call periodically when there is a timeout.
+	 */
+	public void timeout() {
+		double now = host.now();
+		if (phase == WAITING && now - lastProgress >= backoff) {
+			if (retransmitted < 0) {
+				retransmitted = now;
+			}
+			lastProgress = now;
+			backoff = Math.min(2 * backoff, MAX_BACKOFF * timeout);
+			int mode = shared ? SHARED : EXCLUSIVE;
+			for (int i = 0; i < quorum.length; i++) {
+				int voter = quorum[i];
+				if (hasVoter(voter)) {
+					continue;
+				}
+				if (voter == id) {
+					// the own vote is never lost, but it may be held by a finished request
+					remindHolders(resource);
+				} else {
+					host.recoverySent();
+					send(voter, REQ, myTS, 0, resource, mode);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Resends the vote for a lock, or the inquiry if the holder was asked to
+	 * give it back, to the holders not reminded within the last timeout. A
+	 * holder that finished its request answers with a release.
+	 */
+	private void remindHolders(int lock) {
+		double now = host.now();
+		// backwards, an inquiry to this member itself may remove its entry
+		for (int i = holderCount[lock] - 1; i >= 0; i--) {
+			if (i >= holderCount[lock] || now < holderReminder[lock][i]) {
+				continue;
+			}
+			long holder = holders[lock][i];
+			int ts = RequestQueue.timestamp(holder);
+			holderReminder[lock][i] = now + timeout;
+			host.recoverySent();
+			if (holderInquired[lock][i]) {
+				send(RequestQueue.nodeId(holder), INQ, ts, tick(), lock, holderGrant[lock][i]);
+			} else {
+				sendYes(RequestQueue.nodeId(holder), lock, ts, holderGrant[lock][i]);
+			}
+		}
+	}
+}
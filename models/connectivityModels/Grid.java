@@ -37,31 +37,48 @@
 package projects.mutualExclusion.models.connectivityModels;
 
 import sinalgo.configuration.CorruptConfigurationEntryException;
-import sinalgo.models.ConnectivityModelHelper;
-import sinalgo.nodes.Node;
-import sinalgo.runtime.Runtime;
 
-public class Grid extends ConnectivityModelHelper {
+/**
+ * Places the nodes on a square grid (by ID) and connects every node with all
+ * nodes in the same row and in the same column, which gives the quorums of
+ * the Sanders87 algorithm. A node does not belong to its own quorum.
+ */
+public class Grid extends QuorumSystem {
 	
 	/* (non-Javadoc)
-	 * @see connectivityModels.ConnectivityModel#isConnected(nodes.Node, nodes.Node)
+	 * @see projects.mutualExclusion.models.connectivityModels.QuorumSystem#buildQuorums(int)
 	 */
-	protected boolean isConnected(Node from, Node to) {
-		return row(from) == row(to) || col(from) == col(to);
-	}
-	
-	private int row(Node n) {
-		return (n.ID - 1) % gridSize();
-	}
-
-	private int col(Node n) {
-		return (n.ID - 1) / gridSize();
+	public int[][] buildQuorums(int n) {
+		int size = Math.max(1, (int) Math.sqrt(n));
+		int rows = size;
+		int cols = Math.max(0, n - 1) / size + 1;
+		int[] rowCount = new int[rows];
+		int[] colCount = new int[cols];
+		for (int i = 0; i < n; i++) {
+			rowCount[i % size]++;
+			colCount[i / size]++;
+		}
+		int[][] quorums = new int[n][];
+		for (int i = 0; i < n; i++) {
+			int r = i % size;
+			int c = i / size;
+			int[] q = new int[rowCount[r] + colCount[c] - 2];
+			int k = 0;
+			for (int j = r; j < n; j += size) {
+				if (j != i) {
+					q[k++] = j;
+				}
+			}
+			for (int j = c * size; j < Math.min(n, (c + 1) * size); j++) {
+				if (j != i) {
+					q[k++] = j;
+				}
+			}
+			quorums[i] = q;
+		}
+		return quorums;
 	}
 
-	private int gridSize() {
-		return (int) Math.sqrt(Runtime.nodes.size());
-	};
-
 	boolean initialized = false;	
 	
 	/**
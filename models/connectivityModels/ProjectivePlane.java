@@ -0,0 +1,177 @@
+/*
+ Copyright (c) 2007, Distributed Computing Group (DCG)
+                    ETH Zurich
+                    Switzerland
+                    dcg.ethz.ch
+
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ - Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+ - Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the
+   distribution.
+
+ - Neither the name 'Sinalgo' nor the names of its contributors may be
+   used to endorse or promote products derived from this software
+   without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package projects.mutualExclusion.models.connectivityModels;
+
+/**
+ * Maekawa's quorums based on the finite projective plane of prime order q.
+ * <p>
+ * The plane has q^2+q+1 points and as many lines. Every line has q+1 points
+ * and any two lines intersect. The order q is the smallest prime with
+ * q^2+q+1 >= n. Points without a node are mapped to node (point mod n), which
+ * keeps the intersection property. Node i uses one of the lines through its
+ * own point as quorum, always the least used one, such that the load is spread
+ * over all lines. A quorum thus has about sqrt(n) members, including the node itself.
+ */
+public class ProjectivePlane extends QuorumSystem {
+
+	/* (non-Javadoc)
+	 * @see projects.mutualExclusion.models.connectivityModels.QuorumSystem#buildQuorums(int)
+	 */
+	public int[][] buildQuorums(int n) {
+		int q = order(n);
+		int points = q * q + q + 1;
+
+		// the points of each line, and the lines through each point
+		int[][] linePoints = new int[points][];
+		int[][] pointLines = new int[points][q + 1];
+		int[] pointLineCount = new int[points];
+		for (int l = 0; l < points; l++) {
+			linePoints[l] = pointsOnLine(l, q);
+			for (int p : linePoints[l]) {
+				pointLines[p][pointLineCount[p]++] = l;
+			}
+		}
+
+		int[] lineUse = new int[points];
+		int[][] quorums = new int[n][];
+		int[] mark = new int[n];
+		for (int i = 0; i < n; i++) {
+			int best = pointLines[i][0];
+			for (int l : pointLines[i]) {
+				if (lineUse[l] < lineUse[best]) {
+					best = l;
+				}
+			}
+			lineUse[best]++;
+			// map the points to nodes, dropping duplicates
+			int[] members = new int[q + 1];
+			int length = 0;
+			for (int p : linePoints[best]) {
+				int node = p % n;
+				if (mark[node] != i + 1) {
+					mark[node] = i + 1;
+					members[length++] = node;
+				}
+			}
+			int[] quorum = new int[length];
+			System.arraycopy(members, 0, quorum, 0, length);
+			quorums[i] = quorum;
+		}
+		return quorums;
+	}
+
+	/**
+	 * @return The smallest prime q with q^2+q+1 >= n.
+	 */
+	private static int order(int n) {
+		int q = 2;
+		while (q * q + q + 1 < n || !isPrime(q)) {
+			q++;
+		}
+		return q;
+	}
+
+	private static boolean isPrime(int q) {
+		for (int d = 2; d * d <= q; d++) {
+			if (q % d == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Points and lines are both numbered by their normalized homogeneous
+	 * coordinates: (1,a,b) -> a*q+b, (0,1,b) -> q^2+b and (0,0,1) -> q^2+q.
+	 * Point p lies on line l iff their dot product is 0 mod q.
+	 *
+	 * @return The q+1 points on line l.
+	 */
+	private static int[] pointsOnLine(int l, int q) {
+		int[] c = coordinates(l, q);
+		int[] result = new int[q + 1];
+		int k = 0;
+		if (c[2] != 0) {
+			int inv = inverse(c[2], q);
+			for (int a = 0; a < q; a++) {
+				int b = mod(-(c[0] + c[1] * a) * inv, q);
+				result[k++] = a * q + b;
+			}
+			result[k++] = q * q + mod(-c[1] * inv, q);
+		} else if (c[1] != 0) {
+			int a = mod(-c[0] * inverse(c[1], q), q);
+			for (int b = 0; b < q; b++) {
+				result[k++] = a * q + b;
+			}
+			result[k++] = q * q + q;
+		} else {
+			for (int b = 0; b < q; b++) {
+				result[k++] = q * q + b;
+			}
+			result[k++] = q * q + q;
+		}
+		return result;
+	}
+
+	private static int[] coordinates(int index, int q) {
+		if (index < q * q) {
+			return new int[] {1, index / q, index % q};
+		} else if (index < q * q + q) {
+			return new int[] {0, 1, index - q * q};
+		} else {
+			return new int[] {0, 0, 1};
+		}
+	}
+
+	private static int mod(int x, int q) {
+		int r = x % q;
+		return r < 0 ? r + q : r;
+	}
+
+	private static int inverse(int x, int q) {
+		// Fermat: x^(q-2) mod q
+		long result = 1;
+		long base = mod(x, q);
+		for (int e = q - 2; e > 0; e >>= 1) {
+			if ((e & 1) == 1) {
+				result = result * base % q;
+			}
+			base = base * base % q;
+		}
+		return (int) result;
+	}
+}
@@ -0,0 +1,208 @@
+/*
+ Copyright (c) 2007, Distributed Computing Group (DCG)
+                    ETH Zurich
+                    Switzerland
+                    dcg.ethz.ch
+
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ - Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+ - Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the
+   distribution.
+
+ - Neither the name 'Sinalgo' nor the names of its contributors may be
+   used to endorse or promote products derived from this software
+   without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package projects.mutualExclusion.models.connectivityModels;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+import sinalgo.configuration.WrongConfigurationException;
+import sinalgo.models.ConnectivityModelHelper;
+import sinalgo.nodes.Node;
+import sinalgo.runtime.Runtime;
+
+/**
+ * Base class for connectivity models that describe a quorum system.
+ * <p>
+ * Subclasses only decide which nodes form the quorum of each node, see
+ * {@link #buildQuorums(int)}. The nodes are numbered 0..n-1 in the order of
+ * their IDs. The resulting membership table is static, shared by all model
+ * instances and only rebuilt when the set of nodes (or the quorum system in use)
+ * changes.
+ * <p>
+ * A node is connected with every member of its own quorum and with every node
+ * whose quorum it belongs to, such that the voters can answer the requester.
+ * A quorum may contain the node itself, in which case the node has to vote for
+ * itself locally.
+ */
+public abstract class QuorumSystem extends ConnectivityModelHelper {
+
+	/**
+	 * Computes the quorum of every node.
+	 *
+	 * @param n The number of nodes.
+	 * @return For each node index 0..n-1 the indices of the members of its quorum.
+	 */
+	public abstract int[][] buildQuorums(int n);
+
+	/**
+	 * Creates a quorum system outside the simulation, e.g. for the lock service.
+	 *
+	 * @param name The simple class name of a quorum system of this package, e.g. Grid.
+	 */
+	public static QuorumSystem forName(String name) throws ReflectiveOperationException {
+		return (QuorumSystem) Class.forName(QuorumSystem.class.getPackage().getName() + "." + name)
+				.getDeclaredConstructor().newInstance();
+	}
+
+	/**
+	 * @return The members of the quorum of n, possibly including n itself.
+	 */
+	public Node[] getQuorum(Node n) {
+		ensureTable(n);
+		return quorums[indexById[n.ID]];
+	}
+
+	/* (non-Javadoc)
+	 * @see connectivityModels.ConnectivityModel#isConnected(nodes.Node, nodes.Node)
+	 */
+	protected boolean isConnected(Node from, Node to) {
+		ensureTable(from);
+		ensureTable(to);
+		return Arrays.binarySearch(neighbors[indexById[from.ID]], indexById[to.ID]) >= 0;
+	}
+
+	/* (non-Javadoc)
+	 * @see sinalgo.models.ConnectivityModelHelper#updateConnections(sinalgo.nodes.Node)
+	 */
+	@Override
+	public boolean updateConnections(Node n) throws WrongConfigurationException {
+		ensureTable(n);
+		boolean edgeAdded = false;
+		int[] neighborhood = neighbors[indexById[n.ID]];
+		for (int i = 0; i < neighborhood.length; i++) {
+			// add() returns true if the edge already existed
+			edgeAdded = !n.outgoingConnections.add(n, nodes[neighborhood[i]], true) || edgeAdded;
+		}
+		boolean dyingLinks = n.outgoingConnections.removeInvalidLinks();
+		return edgeAdded || dyingLinks;
+	}
+
+	/** The quorum system the table was built by. */
+	private static Class<?> tableOwner = null;
+	/** All nodes, sorted by ID. */
+	private static Node[] nodes = new Node[0];
+	/** The position of each node in nodes, indexed by node ID. */
+	private static int[] indexById = new int[0];
+	/** The quorum of each node, indexed like nodes. */
+	private static Node[][] quorums = new Node[0][];
+	/** The sorted indices of the nodes each node is connected to, indexed like nodes. */
+	private static int[][] neighbors = new int[0][];
+
+	/**
+	 * Rebuilds the table if another quorum system is in use, if the number of
+	 * nodes changed or if n is not yet part of it.
+	 */
+	private void ensureTable(Node n) {
+		if (tableOwner != getClass() || nodes.length != Runtime.nodes.size()
+				|| n.ID >= indexById.length || nodes[indexById[n.ID]] != n) {
+			buildTable();
+		}
+	}
+
+	private void buildTable() {
+		int n = Runtime.nodes.size();
+		Node[] sorted = new Node[n];
+		int maxID = 0;
+		int k = 0;
+		Iterator<Node> nodeIter = Runtime.nodes.iterator();
+		while (nodeIter.hasNext()) {
+			Node node = nodeIter.next();
+			sorted[k++] = node;
+			maxID = Math.max(maxID, node.ID);
+		}
+		// the IDs are usually 1..n already, so a counting sort is enough
+		Node[] byId = new Node[maxID + 1];
+		for (int i = 0; i < n; i++) {
+			byId[sorted[i].ID] = sorted[i];
+		}
+		int[] index = new int[maxID + 1];
+		k = 0;
+		for (int id = 0; id <= maxID; id++) {
+			if (byId[id] != null) {
+				index[id] = k;
+				sorted[k++] = byId[id];
+			}
+		}
+
+		int[][] members = buildQuorums(n);
+		Node[][] quorumTable = new Node[n][];
+		int[] degree = new int[n];
+		for (int i = 0; i < n; i++) {
+			quorumTable[i] = new Node[members[i].length];
+			for (int j = 0; j < members[i].length; j++) {
+				int m = members[i][j];
+				quorumTable[i][j] = sorted[m];
+				if (m != i) {
+					degree[i]++;
+					degree[m]++;
+				}
+			}
+		}
+		// symmetric closure of the membership relation, without self-loops and duplicates
+		int[][] adjacency = new int[n][];
+		for (int i = 0; i < n; i++) {
+			adjacency[i] = new int[degree[i]];
+			degree[i] = 0;
+		}
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j < members[i].length; j++) {
+				int m = members[i][j];
+				if (m != i) {
+					adjacency[i][degree[i]++] = m;
+					adjacency[m][degree[m]++] = i;
+				}
+			}
+		}
+		for (int i = 0; i < n; i++) {
+			int[] a = adjacency[i];
+			Arrays.sort(a);
+			int distinct = 0;
+			for (int j = 0; j < a.length; j++) {
+				if (distinct == 0 || a[distinct - 1] != a[j]) {
+					a[distinct++] = a[j];
+				}
+			}
+			adjacency[i] = distinct == a.length ? a : Arrays.copyOf(a, distinct);
+		}
+
+		nodes = sorted;
+		indexById = index;
+		quorums = quorumTable;
+		neighbors = adjacency;
+		tableOwner = getClass();
+	}
+}
@@ -0,0 +1,78 @@
+/*
+ Copyright (c) 2007, Distributed Computing Group (DCG)
+                    ETH Zurich
+                    Switzerland
+                    dcg.ethz.ch
+
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ - Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+ - Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the
+   distribution.
+
+ - Neither the name 'Sinalgo' nor the names of its contributors may be
+   used to endorse or promote products derived from this software
+   without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package projects.mutualExclusion.models.connectivityModels;
+
+/**
+ * Tree quorums (Agrawala and El Abbadi): the nodes form a complete binary tree
+ * in heap order (by ID) and a quorum is a path from the root to a leaf. The
+ * quorum of node i is the path from the root through i down to a leaf, so it
+ * has about log(n) members. As long as no node fails, all quorums contain the
+ * root, which makes it the bottleneck of this quorum system.
+ */
+public class TreeQuorum extends QuorumSystem {
+
+	/* (non-Javadoc)
+	 * @see projects.mutualExclusion.models.connectivityModels.QuorumSystem#buildQuorums(int)
+	 */
+	public int[][] buildQuorums(int n) {
+		int[][] quorums = new int[n][];
+		int[] path = new int[64];
+		for (int i = 0; i < n; i++) {
+			int length = 0;
+			// from i up to the root
+			for (int k = i; ; k = (k - 1) / 2) {
+				path[length++] = k;
+				if (k == 0) {
+					break;
+				}
+			}
+			// from i down to a leaf, alternating the direction to spread the load
+			int k = i;
+			int depth = 0;
+			while (2 * k + 1 < n) {
+				int child = 2 * k + 1 + ((i + depth) & 1);
+				k = child < n ? child : 2 * k + 1;
+				path[length++] = k;
+				depth++;
+			}
+			int[] q = new int[length];
+			System.arraycopy(path, 0, q, 0, length);
+			quorums[i] = q;
+		}
+		return quorums;
+	}
+}
@@ -0,0 +1,136 @@
+/*
+ Copyright (c) 2007, Distributed Computing Group (DCG)
+                    ETH Zurich
+                    Switzerland
+                    dcg.ethz.ch
+
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ - Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+ - Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the
+   distribution.
+
+ - Neither the name 'Sinalgo' nor the names of its contributors may be
+   used to endorse or promote products derived from this software
+   without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package projects.mutualExclusion.models.messageTransmissionModels;
+
+import sinalgo.configuration.CorruptConfigurationEntryException;
+import sinalgo.models.MessageTransmissionModel;
+import sinalgo.nodes.Node;
+import sinalgo.nodes.messages.Message;
+import sinalgo.runtime.Global;
+import sinalgo.tools.Tools;
+import sinalgo.tools.statistics.Distribution;
+
+/**
+ * Like the RandomTime model, the delay of a message is drawn from the
+ * distribution in the RandomMessageTransmission section of the
+ * configuration file. However, a message never arrives before a message that
+ * was sent earlier on the same channel, i.e. the channels are FIFO, which is
+ * what the algorithms of Sanders and Lamport assume.
+ * <p>
+ * The last arrival time of each channel is kept in an open addressing hash
+ * table of primitives. A channel whose last message has arrived delays
+ * nothing, so such channels are dropped when the table fills up, and the
+ * table only grows with the channels that have messages in transit.
+ */
+public class FifoRandomTime extends MessageTransmissionModel {
+
+	private Distribution dist = null;
+
+	/** The channels (sender ID in the upper, receiver ID in the lower half), 0 for a free slot. */
+	private long[] channels = new long[1024];
+	/** The time the last message on the channel in the same slot arrives. */
+	private double[] lastArrival = new double[1024];
+	private int size = 0;
+
+	public FifoRandomTime() {
+		try {
+			dist = Distribution.getDistributionFromConfigFile("RandomMessageTransmission");
+		} catch (CorruptConfigurationEntryException e) {
+			Tools.fatalError("The FifoRandomTime transmission model requires an entry in the project's " +
+					"config file that specifies the distribution of the message delays.\n" + e.getMessage());
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see sinalgo.models.MessageTransmissionModel#timeToReach(sinalgo.nodes.Node, sinalgo.nodes.Node, sinalgo.nodes.messages.Message)
+	 */
+	public double timeToReach(Node startNode, Node endNode, Message msg) {
+		double arrival = Global.currentTime + dist.nextSample();
+		long channel = ((long) startNode.ID << 32) | (endNode.ID & 0xFFFFFFFFL);
+		int slot = slot(channel);
+		if (channels[slot] == channel) {
+			arrival = Math.max(arrival, lastArrival[slot]);
+		} else {
+			channels[slot] = channel;
+			size++;
+		}
+		lastArrival[slot] = arrival;
+		if (size > channels.length / 2) {
+			rehash();
+		}
+		return arrival - Global.currentTime;
+	}
+
+	/**
+	 * @return The slot of the channel, or the free slot where it belongs.
+	 */
+	private int slot(long channel) {
+		int mask = channels.length - 1;
+		long h = channel * 0x9E3779B97F4A7C15L;
+		int slot = (int) (h >>> 32) & mask;
+		while (channels[slot] != 0 && channels[slot] != channel) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	/**
+	 * Drops the channels whose last message arrived by now, and doubles the
+	 * table if more than a quarter of it is still in use.
+	 */
+	private void rehash() {
+		long[] oldChannels = channels;
+		double[] oldArrival = lastArrival;
+		int live = 0;
+		for (int i = 0; i < oldChannels.length; i++) {
+			if (oldChannels[i] != 0 && oldArrival[i] > Global.currentTime) {
+				live++;
+			}
+		}
+		int capacity = live > oldChannels.length / 4 ? 2 * oldChannels.length : oldChannels.length;
+		channels = new long[capacity];
+		lastArrival = new double[capacity];
+		for (int i = 0; i < oldChannels.length; i++) {
+			if (oldChannels[i] != 0 && oldArrival[i] > Global.currentTime) {
+				int slot = slot(oldChannels[i]);
+				channels[slot] = oldChannels[i];
+				lastArrival[slot] = oldArrival[i];
+			}
+		}
+		size = live;
+	}
+}
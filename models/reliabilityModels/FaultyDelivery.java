@@ -0,0 +1,127 @@
+/*
+ Copyright (c) 2007, Distributed Computing Group (DCG)
+                    ETH Zurich
+                    Switzerland
+                    dcg.ethz.ch
+
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ - Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+ - Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the
+   distribution.
+
+ - Neither the name 'Sinalgo' nor the names of its contributors may be
+   used to endorse or promote products derived from this software
+   without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package projects.mutualExclusion.models.reliabilityModels;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import projects.mutualExclusion.Statistics;
+import sinalgo.configuration.Configuration;
+import sinalgo.configuration.CorruptConfigurationEntryException;
+import sinalgo.models.ReliabilityModel;
+import sinalgo.nodes.Node;
+import sinalgo.nodes.messages.Packet;
+import sinalgo.runtime.Global;
+import sinalgo.tools.Tools;
+import sinalgo.tools.statistics.Distribution;
+
+/**
+ * A reliability model that loses messages and lets nodes crash.
+ * <p>
+ * Every message is dropped with probability FaultyDelivery/dropRate. In
+ * addition, every node crashes at the rate FaultyDelivery/crashRate (per
+ * round, the times between crashes are exponentially distributed) and stays
+ * down for FaultyDelivery/downTime rounds. The state of a node survives the
+ * crash, as if kept on stable storage, but all messages from and to a node
+ * that is down are lost.
+ * <p>
+ * The crash times are drawn lazily when a node sends or receives a message,
+ * so the model needs no per-round work. Only the Sanders nodes recover from
+ * lost messages, see MutualExclusion/Sanders/Timeout.
+ */
+public class FaultyDelivery extends ReliabilityModel {
+
+	private double dropRate = 0;
+	private double crashRate = 0;
+	private double downTime = 0;
+
+	/** The time the current or next crash of a node starts, NaN if not drawn yet, by ID. */
+	private static double[] nextCrash = new double[0];
+
+	public FaultyDelivery() {
+		try {
+			if (Configuration.hasParameter("FaultyDelivery/dropRate")) {
+				dropRate = Configuration.getDoubleParameter("FaultyDelivery/dropRate");
+			}
+			if (Configuration.hasParameter("FaultyDelivery/crashRate")) {
+				crashRate = Configuration.getDoubleParameter("FaultyDelivery/crashRate");
+			}
+			if (Configuration.hasParameter("FaultyDelivery/downTime")) {
+				downTime = Configuration.getDoubleParameter("FaultyDelivery/downTime");
+			}
+		} catch (CorruptConfigurationEntryException e) {
+			Tools.fatalError(e.getMessage());
+		}
+	}
+
+	@Override
+	public boolean reachesDestination(Packet p) {
+		if (isDown(p.origin) || isDown(p.destination) ||
+			(dropRate > 0 && Distribution.getRandom().nextDouble() < dropRate)) {
+			Statistics.messageDropped();
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @return Whether the node is down at the current time.
+	 */
+	private boolean isDown(Node n) {
+		if (crashRate <= 0) {
+			return false;
+		}
+		if (n.ID >= nextCrash.length) {
+			int old = nextCrash.length;
+			nextCrash = Arrays.copyOf(nextCrash, Math.max(2 * old, n.ID + 1));
+			Arrays.fill(nextCrash, old, nextCrash.length, Double.NaN);
+		}
+		double now = Global.currentTime;
+		if (Double.isNaN(nextCrash[n.ID])) {
+			nextCrash[n.ID] = now + timeToCrash();
+		}
+		while (nextCrash[n.ID] + downTime <= now) {
+			nextCrash[n.ID] += downTime + timeToCrash();
+		}
+		return nextCrash[n.ID] <= now;
+	}
+
+	private double timeToCrash() {
+		Random r = Distribution.getRandom();
+		return -Math.log(1 - r.nextDouble()) / crashRate;
+	}
+}
@@ -36,30 +36,47 @@
 */
 package projects.mutualExclusion.nodes.messages;
 
-import sinalgo.nodes.messages.Message;
 
 
 
 /**
- * A standard message type consisting only of a integer as payload.
+ * Asks the request holding the vote of the sender to give it back.
  */
-public class InqMessage extends Message {
+public class InqMessage extends MutexMessage {
+
+	/** The mode of an inquiry that asks for the vote only once the holder does not use it (lazy release). */
+	public static final int LAZY = 1;
 	
 	/**
-	 * The payload of the Message: an integer.
+	 * The timestamp of the request holding the vote.
+	 */
+	public final int timestamp;
+
+	/**
+	 * The Lamport clock of the sender, 0 if the sender does not propagate its clock.
+	 */
+	public final int clock;
+
+	/**
+	 * The lock the message refers to, see MutualExclusion/CriticalSection/Resources.
+	 */
+	public final int lock;
+
+	/**
+	 * 0, or LAZY for a lazy inquiry. The number of the grant of the vote if
+	 * the sender recovers from lost messages.
 	 */
-	public int timestamp = 0; 
+	public final int mode;
 	
 	/**
-	 * The constructor for the IntMessage class.
-	 *
-	 * @param i The integer the payload has to be set to.
+	 * An inquiry for the request with timestamp ts, with the given clock of
+	 * the sender, lock and mode.
 	 */
-	public InqMessage(int ts){
+	public InqMessage(int ts, int clock, int lock, int mode){
+		super(INQ);
 		timestamp = ts;
-	}
-	
-	public Message clone(){
-		return new InqMessage(this.timestamp);
+		this.clock = clock;
+		this.lock = lock;
+		this.mode = mode;
 	}
 }
@@ -0,0 +1,92 @@
+/*
+ Copyright (c) 2007, Distributed Computing Group (DCG)
+                    ETH Zurich
+                    Switzerland
+                    dcg.ethz.ch
+
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ - Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+ - Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the
+   distribution.
+
+ - Neither the name 'Sinalgo' nor the names of its contributors may be
+   used to endorse or promote products derived from this software
+   without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package projects.mutualExclusion.nodes.messages;
+
+/**
+ * A FIFO queue of ints in a growing ring buffer.
+ */
+public class IntQueue {
+
+	private int[] elements;
+	private int head = 0;
+	private int size = 0;
+
+	public IntQueue(int initialCapacity) {
+		elements = new int[Math.max(1, initialCapacity)];
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Appends a value at the tail.
+	 */
+	public void add(int value) {
+		if (size == elements.length) {
+			int[] grown = new int[2 * elements.length];
+			for (int i = 0; i < size; i++) {
+				grown[i] = elements[(head + i) % elements.length];
+			}
+			elements = grown;
+			head = 0;
+		}
+		elements[(head + size) % elements.length] = value;
+		size++;
+	}
+
+	/**
+	 * @return The value at the head. The queue must not be empty.
+	 */
+	public int peek() {
+		return elements[head];
+	}
+
+	/**
+	 * Removes the value at the head. The queue must not be empty.
+	 */
+	public int poll() {
+		int value = elements[head];
+		head = (head + 1) % elements.length;
+		size--;
+		return value;
+	}
+}
@@ -0,0 +1,122 @@
+/*
+ Copyright (c) 2007, Distributed Computing Group (DCG)
+                    ETH Zurich
+                    Switzerland
+                    dcg.ethz.ch
+
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ - Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+ - Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the
+   distribution.
+
+ - Neither the name 'Sinalgo' nor the names of its contributors may be
+   used to endorse or promote products derived from this software
+   without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package projects.mutualExclusion.nodes.messages;
+
+/**
+ * A set of non-negative ints in an open addressing hash table with linear
+ * probing, which does not allocate per element.
+ */
+public class IntSet {
+
+	/** The elements plus one, 0 for a free slot. */
+	private int[] slots;
+	private int size = 0;
+
+	public IntSet(int initialCapacity) {
+		slots = new int[Integer.highestOneBit(Math.max(2, 2 * initialCapacity - 1)) << 1];
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean contains(int value) {
+		return slots[slot(value + 1)] != 0;
+	}
+
+	/**
+	 * Adds a value, if it is not in the set yet.
+	 */
+	public void add(int value) {
+		int i = slot(value + 1);
+		if (slots[i] != 0) {
+			return;
+		}
+		slots[i] = value + 1;
+		size++;
+		if (size > slots.length / 2) {
+			int[] old = slots;
+			slots = new int[2 * old.length];
+			for (int j = 0; j < old.length; j++) {
+				if (old[j] != 0) {
+					slots[slot(old[j])] = old[j];
+				}
+			}
+		}
+	}
+
+	/**
+	 * Removes a value, if it is in the set.
+	 */
+	public void remove(int value) {
+		int i = slot(value + 1);
+		if (slots[i] == 0) {
+			return;
+		}
+		slots[i] = 0;
+		size--;
+		// move the following elements of the cluster back, such that no lookup stops early
+		int mask = slots.length - 1;
+		int j = (i + 1) & mask;
+		while (slots[j] != 0) {
+			int home = home(slots[j]);
+			if (((j - home) & mask) >= ((j - i) & mask)) {
+				slots[i] = slots[j];
+				slots[j] = 0;
+				i = j;
+			}
+			j = (j + 1) & mask;
+		}
+	}
+
+	private int home(int key) {
+		int h = key * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & (slots.length - 1);
+	}
+
+	/**
+	 * @return The slot of the key (the element plus one), or the free slot where it belongs.
+	 */
+	private int slot(int key) {
+		int mask = slots.length - 1;
+		int i = home(key);
+		while (slots[i] != 0 && slots[i] != key) {
+			i = (i + 1) & mask;
+		}
+		return i;
+	}
+}
@@ -0,0 +1,84 @@
+/*
+ Copyright (c) 2007, Distributed Computing Group (DCG)
+                    ETH Zurich
+                    Switzerland
+                    dcg.ethz.ch
+
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ - Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+ - Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the
+   distribution.
+
+ - Neither the name 'Sinalgo' nor the names of its contributors may be
+   used to endorse or promote products derived from this software
+   without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package projects.mutualExclusion.nodes.messages;
+
+import sinalgo.nodes.messages.Message;
+
+
+
+/**
+ * Base class of the messages of the mutual exclusion algorithms.
+ * <p>
+ * The messages are immutable, hence {@link #clone()} returns the message
+ * itself and a single instance can be sent to all recipients of a broadcast.
+ * The type tag allows the receiver to dispatch with a switch instead of a
+ * chain of instanceof tests.
+ */
+public abstract class MutexMessage extends Message {
+
+	public static final int REQ = 0;
+	public static final int YES = 1;
+	public static final int INQ = 2;
+	public static final int RELINQUISH = 3;
+	public static final int RELEASE = 4;
+	public static final int SK_REQUEST = 5;
+	public static final int SK_TOKEN = 6;
+	public static final int RAYMOND_REQUEST = 7;
+	public static final int PRIVILEGE = 8;
+	public static final int LAMPORT_ACK = 9;
+	public static final int LAMPORT_RELEASE = 10;
+	public static final int COMPOSITE = 11;
+	public static final int TRANSFER = 12;
+	public static final int PASS = 13;
+	public static final int PASSED = 14;
+
+	/**
+	 * The type of the message, one of the constants above.
+	 */
+	public final int type;
+
+	protected MutexMessage(int type) {
+		this.type = type;
+	}
+
+	/* (non-Javadoc)
+	 * @see sinalgo.nodes.messages.Message#clone()
+	 */
+	public Message clone() {
+		return this;
+	}
+}
@@ -36,20 +36,53 @@
 */
 package projects.mutualExclusion.nodes.messages;
 
-import sinalgo.nodes.messages.Message;
 
 
 
-public class ReleaseMessage extends Message {	
+/**
+ * Gives a vote back to its voter when the request holding it leaves the CS.
+ */
+public class ReleaseMessage extends MutexMessage {
+
+	/** The mode of the release of votes kept after the CS (lazy release). */
+	public static final int LAZY = 1;
+
 	/**
-	 * The constructor for the ReleaseMessage class.
-	 *
-	 * @param i The integer the payload has to be set to.
+	 * The message for lock 0 without a clock, all senders can share this instance.
 	 */
-	public ReleaseMessage(){
-	}
-	
-	public Message clone(){
-		return new ReleaseMessage();
+	public static final ReleaseMessage INSTANCE = new ReleaseMessage(0, 0, -1, 0);
+
+	/**
+	 * The Lamport clock of the sender, 0 if the sender does not propagate its clock.
+	 */
+	public final int clock;
+
+	/**
+	 * The lock the message refers to, see MutualExclusion/CriticalSection/Resources.
+	 */
+	public final int lock;
+
+	/**
+	 * The timestamp of the request that gives the vote back, -1 for the
+	 * vote of the sender, whatever request holds it.
+	 */
+	public final int timestamp;
+
+	/**
+	 * 0, or LAZY if the sender kept the vote after the CS. The number of the
+	 * grant of the vote if the sender recovers from lost messages.
+	 */
+	public final int mode;
+
+	/**
+	 * A release with the given clock of the sender, for the given lock,
+	 * request and mode.
+	 */
+	public ReleaseMessage(int clock, int lock, int timestamp, int mode){
+		super(RELEASE);
+		this.clock = clock;
+		this.lock = lock;
+		this.timestamp = timestamp;
+		this.mode = mode;
 	}
 }
@@ -36,27 +36,44 @@
 */
 package projects.mutualExclusion.nodes.messages;
 
-import sinalgo.nodes.messages.Message;
 
 
 
-public class RelinquishMessage extends Message {
+/**
+ * Gives a vote back to its voter after an inquiry, while the request still waits.
+ */
+public class RelinquishMessage extends MutexMessage {
 	
 	/**
-	 * The payload of the Message: an integer.
+	 * The timestamp of the request that gives the vote back.
 	 */
-	public int timestamp = 0; 
+	public final int timestamp;
+
+	/**
+	 * The Lamport clock of the sender, 0 if the sender does not propagate its clock.
+	 */
+	public final int clock;
+
+	/**
+	 * The lock the message refers to, see MutualExclusion/CriticalSection/Resources.
+	 */
+	public final int lock;
+
+	/**
+	 * The number of the grant of the vote given back, 0 if the sender does
+	 * not recover from lost messages.
+	 */
+	public final int grant;
 	
 	/**
-	 * The constructor for the IntMessage class.
-	 *
-	 * @param i The integer the payload has to be set to.
+	 * A relinquish of the request with timestamp ts, with the given clock of
+	 * the sender, lock and grant.
 	 */
-	public RelinquishMessage(int ts){
+	public RelinquishMessage(int ts, int clock, int lock, int grant){
+		super(RELINQUISH);
 		timestamp = ts;
-	}
-	
-	public Message clone(){
-		return new RelinquishMessage(this.timestamp);
+		this.clock = clock;
+		this.lock = lock;
+		this.grant = grant;
 	}
 }
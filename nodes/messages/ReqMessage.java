@@ -36,30 +36,40 @@
 */
 package projects.mutualExclusion.nodes.messages;
 
-import sinalgo.nodes.messages.Message;
 
 
 
 /**
- * A standard message type consisting only of a integer as payload.
+ * A request for the CS, timestamped by its requester.
  */
-public class ReqMessage extends Message {
+public class ReqMessage extends MutexMessage {
+
+	/** The lock modes. */
+	public static final int EXCLUSIVE = 0;
+	public static final int SHARED = 1;
 	
 	/**
-	 * The payload of the Message: an integer.
+	 * The timestamp of the request.
 	 */
-	public int timestamp = 0; 
+	public final int timestamp;
+
+	/**
+	 * The lock the message refers to, see MutualExclusion/CriticalSection/Resources.
+	 */
+	public final int lock;
+
+	/**
+	 * The lock mode, EXCLUSIVE or SHARED.
+	 */
+	public final int mode;
 	
 	/**
-	 * The constructor for the IntMessage class.
-	 *
-	 * @param i The integer the payload has to be set to.
+	 * A request with timestamp ts for the given lock and mode.
 	 */
-	public ReqMessage(int ts){
+	public ReqMessage(int ts, int lock, int mode){
+		super(REQ);
 		timestamp = ts;
-	}
-	
-	public Message clone(){
-		return new ReqMessage(this.timestamp);
+		this.lock = lock;
+		this.mode = mode;
 	}
 }
@@ -0,0 +1,186 @@
+/*
+ Copyright (c) 2007, Distributed Computing Group (DCG)
+                    ETH Zurich
+                    Switzerland
+                    dcg.ethz.ch
+
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ - Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+ - Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the
+   distribution.
+
+ - Neither the name 'Sinalgo' nor the names of its contributors may be
+   used to endorse or promote products derived from this software
+   without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package projects.mutualExclusion.nodes.messages;
+
+/**
+ * A priority queue of deferred requests, ordered by timestamp and then by
+ * the ID of the requester.
+ * <p>
+ * Each request is packed into a single long (timestamp in the upper, node ID
+ * in the lower 32 bits), such that comparing two keys compares the requests
+ * and the queue is a plain binary heap of primitives without any per-entry
+ * allocation. Node IDs must not be negative.
+ */
+public class RequestQueue {
+
+	private long[] heap;
+	private int size = 0;
+
+	public RequestQueue(int initialCapacity) {
+		heap = new long[Math.max(1, initialCapacity)];
+	}
+
+	/**
+	 * @return The key of the request of node nodeId with the given timestamp.
+	 */
+	public static long key(int timestamp, int nodeId) {
+		return ((long) timestamp << 32) | (nodeId & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * @return The timestamp of the request with the given key.
+	 */
+	public static int timestamp(long key) {
+		return (int) (key >> 32);
+	}
+
+	/**
+	 * @return The ID of the requester of the request with the given key.
+	 */
+	public static int nodeId(long key) {
+		return (int) key;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * @return Whether the queue holds the request with the given key. Takes
+	 * linear time.
+	 */
+	public boolean contains(long key) {
+		for (int i = 0; i < size; i++) {
+			if (heap[i] == key) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Adds the request of node nodeId with the given timestamp.
+	 */
+	public void add(int timestamp, int nodeId) {
+		if (size == heap.length) {
+			long[] grown = new long[2 * heap.length];
+			System.arraycopy(heap, 0, grown, 0, size);
+			heap = grown;
+		}
+		siftUp(size++, key(timestamp, nodeId));
+	}
+
+	/**
+	 * @return The key of the oldest request. The queue must not be empty.
+	 */
+	public long peek() {
+		return heap[0];
+	}
+
+	/**
+	 * Removes the oldest request.
+	 * @return The key of the removed request. The queue must not be empty.
+	 */
+	public long poll() {
+		long head = heap[0];
+		siftDown(0, heap[--size]);
+		return head;
+	}
+
+	/**
+	 * Removes the oldest request of a node. Takes linear time.
+	 * @return The key of the removed request, -1 if the node has no request in the queue.
+	 */
+	public long removeOldest(int nodeId) {
+		int index = -1;
+		for (int i = 0; i < size; i++) {
+			if (nodeId(heap[i]) == nodeId && (index < 0 || heap[i] < heap[index])) {
+				index = i;
+			}
+		}
+		if (index < 0) {
+			return -1;
+		}
+		long removed = heap[index];
+		long k = heap[--size];
+		if (index < size) {
+			siftDown(index, k);
+			if (heap[index] == k) {
+				siftUp(index, k);
+			}
+		}
+		return removed;
+	}
+
+	/**
+	 * Moves the key from the free position i towards the root to where it belongs.
+	 */
+	private void siftUp(int i, long k) {
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (heap[parent] <= k) {
+				break;
+			}
+			heap[i] = heap[parent];
+			i = parent;
+		}
+		heap[i] = k;
+	}
+
+	/**
+	 * Moves the key from the free position i towards the leaves to where it belongs.
+	 */
+	private void siftDown(int i, long k) {
+		int half = size >>> 1;
+		while (i < half) {
+			int child = 2 * i + 1;
+			if (child + 1 < size && heap[child + 1] < heap[child]) {
+				child++;
+			}
+			if (k <= heap[child]) {
+				break;
+			}
+			heap[i] = heap[child];
+			i = child;
+		}
+		heap[i] = k;
+	}
+}
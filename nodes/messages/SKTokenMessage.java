@@ -0,0 +1,82 @@
+/*
+ Copyright (c) 2007, Distributed Computing Group (DCG)
+                    ETH Zurich
+                    Switzerland
+                    dcg.ethz.ch
+
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ - Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+ - Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the
+   distribution.
+
+ - Neither the name 'Sinalgo' nor the names of its contributors may be
+   used to endorse or promote products derived from this software
+   without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package projects.mutualExclusion.nodes.messages;
+
+/**
+ * The token of the Suzuki-Kasami algorithm.
+ * <p>
+ * The token is modified by its holder, but there is only one token and it is
+ * always sent to a single node, which becomes its only owner. Hence it is not
+ * copied either.
+ */
+public class SKTokenMessage extends MutexMessage {
+
+	/**
+	 * The sequence number of the last granted request of each node, by ID.
+	 */
+	public int[] granted;
+
+	/**
+	 * The IDs of the nodes waiting for the token.
+	 */
+	public final IntQueue queue = new IntQueue(16);
+
+	/**
+	 * Whether a node is in the queue, by ID.
+	 */
+	public boolean[] queued;
+
+	public SKTokenMessage(int maxID) {
+		super(SK_TOKEN);
+		granted = new int[maxID + 1];
+		queued = new boolean[maxID + 1];
+	}
+
+	/**
+	 * Makes room for the nodes up to the given ID.
+	 */
+	public void ensureCapacity(int maxID) {
+		if (maxID >= granted.length) {
+			int[] g = new int[maxID + 1];
+			System.arraycopy(granted, 0, g, 0, granted.length);
+			granted = g;
+			boolean[] q = new boolean[maxID + 1];
+			System.arraycopy(queued, 0, q, 0, queued.length);
+			queued = q;
+		}
+	}
+}
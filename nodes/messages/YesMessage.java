@@ -36,20 +36,49 @@
 */
 package projects.mutualExclusion.nodes.messages;
 
-import sinalgo.nodes.messages.Message;
 
 
 
-public class YesMessage extends Message {	
+/**
+ * The vote of a voter for a request.
+ */
+public class YesMessage extends MutexMessage {
 	/**
-	 * The constructor for the IntMessage class.
-	 *
-	 * @param i The integer the payload has to be set to.
+	 * The message for lock 0 without a clock, all senders can share this instance.
 	 */
-	public YesMessage(){
-	}
-	
-	public Message clone(){
-		return new YesMessage();
+	public static final YesMessage INSTANCE = new YesMessage(0, 0, -1, 0);
+
+	/**
+	 * The Lamport clock of the sender, 0 if the sender does not propagate its clock.
+	 */
+	public final int clock;
+
+	/**
+	 * The lock the message refers to, see MutualExclusion/CriticalSection/Resources.
+	 */
+	public final int lock;
+
+	/**
+	 * The timestamp of the request the vote is given to, -1 if the sender
+	 * does not recover from lost messages.
+	 */
+	public final int timestamp;
+
+	/**
+	 * The number of the grant of the vote, 0 if the sender does not recover
+	 * from lost messages.
+	 */
+	public final int grant;
+
+	/**
+	 * A vote with the given clock of the sender, for the given lock, request
+	 * and grant.
+	 */
+	public YesMessage(int clock, int lock, int timestamp, int grant){
+		super(YES);
+		this.clock = clock;
+		this.lock = lock;
+		this.timestamp = timestamp;
+		this.grant = grant;
 	}
 }
@@ -0,0 +1,178 @@
+/*
+ Copyright (c) 2007, Distributed Computing Group (DCG)
+                    ETH Zurich
+                    Switzerland
+                    dcg.ethz.ch
+
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ - Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+ - Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the
+   distribution.
+
+ - Neither the name 'Sinalgo' nor the names of its contributors may be
+   used to endorse or promote products derived from this software
+   without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package projects.mutualExclusion.nodes.nodeImplementations;
+
+import java.util.Arrays;
+
+import projects.mutualExclusion.nodes.messages.LamportAckMessage;
+import projects.mutualExclusion.nodes.messages.LamportReleaseMessage;
+import projects.mutualExclusion.nodes.messages.MutexMessage;
+import projects.mutualExclusion.nodes.messages.ReqMessage;
+import projects.mutualExclusion.nodes.messages.RequestQueue;
+import sinalgo.nodes.Node;
+import sinalgo.nodes.messages.Message;
+
+/**
+ * Lamport's queue-based algorithm for mutual exclusion.
+ * <p>
+ * Every node keeps a queue of all requests, ordered by Lamport timestamp.
+ * A request is sent to all other nodes, which acknowledge it. A node enters
+ * the CS once its own request is the oldest in its queue and it received a
+ * younger message from every other node. Leaving the CS is announced to all
+ * nodes, so an entry costs 3(n-1) messages.
+ * <p>
+ * The algorithm needs FIFO channels (see FifoRandomTime) and a complete
+ * network, so the messages are sent directly, independent of the
+ * connectivity model.
+ */
+public class LamportNode extends MutexNode {
+
+	/** Lamport clock. */
+	int clock = 0;
+	int myTS;
+	/** All requests known to this node. Removed requests stay until they reach the head. */
+	RequestQueue queue = new RequestQueue(16);
+	/** The timestamp of the open request of each node, -1 if none, by ID. */
+	int[] pending = new int[0];
+	/** The timestamp of the last message from each node, by ID. */
+	int[] lastTS = new int[0];
+	/** The number of other nodes that did not send a younger message than the current request yet. */
+	int missing;
+
+	@Override
+	protected void deliver(Message msg, Node sender) {
+		if (!(msg instanceof MutexMessage)) {
+			return;
+		}
+		ensureCapacity(sender.ID);
+		switch (((MutexMessage) msg).type) {
+			case MutexMessage.REQ:
+				int ts = ((ReqMessage) msg).timestamp;
+				received(ts, sender);
+				queue.add(ts, sender.ID);
+				pending[sender.ID] = ts;
+				countSent(1);
+				transmitDirect(new LamportAckMessage(++clock), sender);
+				break;
+			case MutexMessage.LAMPORT_ACK:
+				received(((LamportAckMessage) msg).timestamp, sender);
+				break;
+			case MutexMessage.LAMPORT_RELEASE:
+				received(((LamportReleaseMessage) msg).timestamp, sender);
+				pending[sender.ID] = -1;
+				break;
+		}
+		tryEnter();
+	}
+
+	/**
+	 * Merges the timestamp of a received message into the clock and counts
+	 * the first message of a node that is younger than the current request.
+	 */
+	private void received(int ts, Node sender) {
+		clock = Math.max(clock, ts) + 1;
+		boolean wasYounger = isYounger(lastTS[sender.ID], sender.ID);
+		lastTS[sender.ID] = Math.max(lastTS[sender.ID], ts);
+		if (state == State.WAITING && !wasYounger && isYounger(lastTS[sender.ID], sender.ID)) {
+			missing--;
+		}
+	}
+
+	/**
+	 * @return True if (ts, id) is younger than the own request.
+	 */
+	private boolean isYounger(int ts, int id) {
+		return ts > myTS || (ts == myTS && id > ID);
+	}
+
+	private void tryEnter() {
+		if (state != State.WAITING || missing > 0) {
+			return;
+		}
+		// drop the released requests from the head
+		while (!queue.isEmpty()) {
+			long head = queue.peek();
+			if (pending[RequestQueue.nodeId(head)] == RequestQueue.timestamp(head)) {
+				break;
+			}
+			queue.poll();
+		}
+		if (!queue.isEmpty() && queue.peek() == RequestQueue.key(myTS, ID)) {
+			enterCS();
+		}
+	}
+
+	private void ensureCapacity(int id) {
+		if (id >= pending.length) {
+			int length = Math.max(2 * pending.length, id + 1);
+			int[] p = new int[length];
+			Arrays.fill(p, -1);
+			System.arraycopy(pending, 0, p, 0, pending.length);
+			pending = p;
+			int[] l = new int[length];
+			Arrays.fill(l, -1);
+			System.arraycopy(lastTS, 0, l, 0, lastTS.length);
+			lastTS = l;
+		}
+	}
+
+	@Override
+	protected void requestCS() {
+		setState(State.WAITING);
+		myTS = ++clock;
+		ensureCapacity(NodeTable.maxID());
+		queue.add(myTS, ID);
+		pending[ID] = myTS;
+		missing = sendToAllOthers(new ReqMessage(myTS, 0, ReqMessage.EXCLUSIVE));
+		// messages younger than the request cannot have arrived yet
+		updateColor();
+		tryEnter();
+	}
+
+	@Override
+	public void leaveCS() {
+		setState(State.NOT_IN_CS);
+		pending[ID] = -1;
+		sendToAllOthers(new LamportReleaseMessage(++clock));
+		updateColor();
+	}
+
+	@Override
+	public String toString() {
+		return "Node(" + this.ID + ") " + state + (state == State.WAITING ? " (missing: " + missing + "; ts: " + myTS + ")" : "");
+	}
+}
@@ -0,0 +1,313 @@
+/*
+ Copyright (c) 2007, Distributed Computing Group (DCG)
+                    ETH Zurich
+                    Switzerland
+                    dcg.ethz.ch
+
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ - Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+ - Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the
+   distribution.
+
+ - Neither the name 'Sinalgo' nor the names of its contributors may be
+   used to endorse or promote products derived from this software
+   without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package projects.mutualExclusion.nodes.nodeImplementations;
+
+import java.awt.Color;
+
+import projects.mutualExclusion.InvariantChecker;
+import projects.mutualExclusion.Statistics;
+import projects.mutualExclusion.Workload;
+import projects.mutualExclusion.nodes.timers.leaveCSTimer;
+import projects.mutualExclusion.nodes.timers.requestTimer;
+import sinalgo.configuration.WrongConfigurationException;
+import sinalgo.nodes.Node;
+import sinalgo.nodes.messages.Inbox;
+import sinalgo.nodes.messages.Message;
+import sinalgo.runtime.Global;
+
+/**
+ * Base class of the nodes of all mutual exclusion algorithms.
+ * <p>
+ * It holds the state and the message counter of the node and reports both to
+ * {@link Statistics}, including the waiting and hold times of every request,
+ * and every change of its state to the {@link InvariantChecker}.
+ * The node requests the CS according to the {@link Workload} and leaves it
+ * when its leaveCSTimer fires, after the hold time the workload chose for
+ * the request. In asynchronous mode, where there are no rounds, an idle
+ * node instead starts a timer for its next request. Subclasses implement
+ * the algorithm: how to
+ * request the CS, how to handle a message and how to leave the CS.
+ */
+public abstract class MutexNode extends Node {
+	public enum State {
+	    NOT_IN_CS, WAITING, IN_CS 
+	}
+
+	public int messageCount = 0;
+	public State state = State.NOT_IN_CS;
+
+	/**
+	 * The lock of the current request. Only the Sanders nodes manage several
+	 * locks, the other algorithms ignore it.
+	 */
+	public int resource = 0;
+	/** Whether the current request is shared, only supported by the Sanders nodes. */
+	public boolean shared = false;
+	/** The time the node stays in the CS for the current request. */
+	public double holdTime;
+
+	/** The time the current request was issued. */
+	protected double requestTime;
+	/** The time the node entered the CS. */
+	protected double enterTime;
+	/** The number of relinquish messages sent for the current request. */
+	protected int requestRelinquishs;
+
+	/** The timers are reused, a node has at most one request and one CS at a time. */
+	private leaveCSTimer leaveTimer = null;
+	private requestTimer nextRequestTimer = null;
+
+	/**
+	 * Starts a request for the CS. Called in preStep (in asynchronous mode by
+	 * the requestTimer) if the node is not in the CS and the workload decides
+	 * to request it.
+	 */
+	protected abstract void requestCS();
+
+	/**
+	 * Leaves the CS and lets the other nodes enter.
+	 */
+	public abstract void leaveCS();
+
+	/**
+	 * Handles a single message.
+	 */
+	protected abstract void deliver(Message msg, Node sender);
+
+	@Override
+	public void handleMessages(Inbox inbox) {
+		while(inbox.hasNext()) {
+			Message msg = inbox.next();
+			Node sender = inbox.getSender();
+			deliver(msg, sender);
+		}
+	}
+
+	/**
+	 * Changes the state and records the waiting and hold times.
+	 */
+	protected void setState(State newState) {
+		State oldState = state;
+		state = newState;
+		switch (newState) {
+			case WAITING:
+				requestTime = Global.currentTime;
+				requestRelinquishs = 0;
+				break;
+			case IN_CS:
+				enterTime = Global.currentTime;
+				break;
+			case NOT_IN_CS:
+				if (Global.isAsynchronousMode) {
+					scheduleRequest();
+				}
+				break;
+		}
+		reportState(oldState, newState);
+	}
+
+	/**
+	 * Reports a change of the state to the {@link Statistics} and the
+	 * {@link InvariantChecker}. The parallel rounds (see ParallelSandersNode)
+	 * defer the report to the end of the round.
+	 */
+	protected void reportState(State from, State to) {
+		Statistics.stateChanged(from, to);
+		InvariantChecker.stateChanged(this, from, to);
+		if (to == State.IN_CS) {
+			Statistics.csEntered(enterTime - requestTime, requestRelinquishs);
+			Statistics.lockEntered(resource, shared, requestTime, enterTime);
+		} else if (from == State.IN_CS) {
+			Statistics.csLeft(Global.currentTime - enterTime);
+			Statistics.lockLeft(resource, Global.currentTime);
+		}
+	}
+
+	/**
+	 * Enters the CS and starts the timer to leave it again.
+	 */
+	protected void enterCS() {
+		setState(State.IN_CS);
+		updateColor();
+		startLeaveTimer(holdTime);
+	}
+
+	/**
+	 * Records that count messages were sent.
+	 */
+	protected void countSent(int count) {
+		messageCount += count;
+		Statistics.messagesSent(count);
+	}
+
+	/**
+	 * Records that a relinquish message was sent for the current request.
+	 */
+	protected void countRelinquish() {
+		requestRelinquishs++;
+		Statistics.relinquishSent(1);
+	}
+
+	/**
+	 * Records that count messages were sent as part of a composite message.
+	 */
+	protected void countCoalesced(int count) {
+		Statistics.messagesCoalesced(count);
+	}
+
+	/**
+	 * Sends a message to a neighbor. The benchmarks replace this method to
+	 * run the node without the simulation framework.
+	 */
+	protected void transmit(Message msg, Node target) {
+		send(msg, target);
+	}
+
+	/**
+	 * Sends a message to any node, independent of the connectivity model.
+	 */
+	protected void transmitDirect(Message msg, Node target) {
+		sendDirect(msg, target);
+	}
+
+	/**
+	 * Leaves the CS after the given time.
+	 */
+	protected void startLeaveTimer(double time) {
+		if (leaveTimer == null) {
+			leaveTimer = new leaveCSTimer();
+		}
+		leaveTimer.startRelative(time, this);
+	}
+
+	/**
+	 * Starts the timer of the next request, in asynchronous mode when the
+	 * node becomes idle.
+	 */
+	protected void scheduleRequest() {
+		double time = Workload.get().timeToNextRequest(this);
+		if (time > 0) {
+			if (nextRequestTimer == null) {
+				nextRequestTimer = new requestTimer();
+			}
+			nextRequestTimer.startRelative(time, this);
+		}
+	}
+
+	/**
+	 * Called by the requestTimer when the next request is due.
+	 */
+	public void requestDue() {
+		if (state != State.NOT_IN_CS) {
+			return;
+		}
+		if (Workload.get().startRequest(this)) {
+			requestCS();
+		} else {
+			scheduleRequest();
+		}
+	}
+
+	/**
+	 * Sends a message directly to all other nodes.
+	 * @return The number of recipients.
+	 */
+	protected int sendToAllOthers(Message msg) {
+		int recipients = 0;
+		int maxID = NodeTable.maxID();
+		for (int id = 1; id <= maxID; id++) {
+			Node n = NodeTable.get(id);
+			if (n != null && n != this) {
+				transmitDirect(msg, n);
+				recipients++;
+			}
+		}
+		countSent(recipients);
+		return recipients;
+	}
+
+	/**
+	 * Colors the node according to its state.
+	 */
+	protected void updateColor() {
+		switch (state) {
+			case NOT_IN_CS:
+				setColor(Color.GREEN);
+				break;
+			case WAITING:
+				setColor(Color.BLUE);
+				break;
+			case IN_CS:
+				setColor(Color.RED);
+				break;
+		}
+	}
+
+	@Override
+	public void preStep() {
+		if (state == State.NOT_IN_CS && wantsRequest()) {
+			requestCS();
+		}
+	}
+
+	/**
+	 * Decides in preStep whether the idle node requests the CS, by default
+	 * as the {@link Workload} samples it.
+	 */
+	protected boolean wantsRequest() {
+		return Workload.get().nextRequest(this);
+	}
+
+	@Override
+	public void init() {
+		NodeTable.register(this);
+		Statistics.nodeAdded(state);
+		updateColor();
+		if (Global.isAsynchronousMode) {
+			scheduleRequest();
+		}
+	}
+
+	@Override
+	public void neighborhoodChange() {}
+
+	@Override
+	public void postStep() {}
+
+	@Override
+	public void checkRequirements() throws WrongConfigurationException {}
+}
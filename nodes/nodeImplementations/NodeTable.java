@@ -0,0 +1,76 @@
+/*
+ Copyright (c) 2007, Distributed Computing Group (DCG)
+                    ETH Zurich
+                    Switzerland
+                    dcg.ethz.ch
+
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ - Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+ - Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the
+   distribution.
+
+ - Neither the name 'Sinalgo' nor the names of its contributors may be
+   used to endorse or promote products derived from this software
+   without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package projects.mutualExclusion.nodes.nodeImplementations;
+
+import sinalgo.nodes.Node;
+
+/**
+ * All mutual exclusion nodes, indexed by ID, such that a node can address
+ * another node it only knows by ID without searching the node collection.
+ */
+public class NodeTable {
+
+	private static Node[] nodesById = new Node[16];
+	private static int maxID = 0;
+
+	/**
+	 * Adds a node to the table.
+	 */
+	public static void register(Node n) {
+		if (n.ID >= nodesById.length) {
+			Node[] grown = new Node[Math.max(2 * nodesById.length, n.ID + 1)];
+			System.arraycopy(nodesById, 0, grown, 0, nodesById.length);
+			nodesById = grown;
+		}
+		nodesById[n.ID] = n;
+		maxID = Math.max(maxID, n.ID);
+	}
+
+	/**
+	 * @return The node with the given ID, null if there is none.
+	 */
+	public static Node get(int id) {
+		return id < nodesById.length ? nodesById[id] : null;
+	}
+
+	/**
+	 * @return The largest ID of a registered node.
+	 */
+	public static int maxID() {
+		return maxID;
+	}
+}
@@ -0,0 +1,258 @@
+/*
+ Copyright (c) 2007, Distributed Computing Group (DCG)
+                    ETH Zurich
+                    Switzerland
+                    dcg.ethz.ch
+
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ - Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+ - Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the
+   distribution.
+
+ - Neither the name 'Sinalgo' nor the names of its contributors may be
+   used to endorse or promote products derived from this software
+   without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package projects.mutualExclusion.nodes.nodeImplementations;
+
+import java.util.Random;
+
+import projects.mutualExclusion.ParallelRounds;
+import sinalgo.nodes.Node;
+import sinalgo.nodes.messages.Inbox;
+import sinalgo.nodes.messages.Message;
+import sinalgo.runtime.Global;
+import sinalgo.tools.Tools;
+
+/**
+ * A SandersNode that is stepped by the {@link ParallelRounds} instead of the
+ * framework, on one of several threads. It delivers its messages itself,
+ * with delays from its own random stream, and defers what it reports to the
+ * end of the round. Messages are never lost, so MutualExclusion/Sanders/Timeout
+ * must be 0, and MutualExclusion/Sanders/LazyRelease is not supported.
+ */
+public class ParallelSandersNode extends SandersNode {
+
+	/** The partition that steps the node, set by the ParallelRounds. */
+	public ParallelRounds.Partition partition;
+	/** Set by the ParallelRounds when the next request is due in this round. */
+	public boolean requestPending = false;
+
+	/** The random stream of the message delays. */
+	private Random random;
+	/** The time the node leaves the CS, -1 if it is not in the CS. */
+	private double leaveTime = -1;
+
+	/** The received messages by arrival, the i-th from inboxSenders[i]; the first inboxHead are delivered. */
+	private Message[] inbox = new Message[8];
+	private Node[] inboxSenders = new Node[8];
+	private double[] inboxArrivals = new double[8];
+	private int inboxHead = 0;
+	private int inboxSize = 0;
+
+	/** The IDs of the receivers this node sent to, 0 for a free slot, and the arrival of the last message. */
+	private int[] channels = new int[16];
+	private double[] lastArrival = new double[16];
+	private int channelCount = 0;
+
+	/**
+	 * Executes the round of the node like the framework does: preStep, the
+	 * leave timer, the messages that arrived and postStep.
+	 */
+	public void step(double now) {
+		super.preStep();
+		if (leaveTime >= 0 && leaveTime <= now) {
+			leaveTime = -1;
+			leaveCS();
+		}
+		while (inboxHead < inboxSize && inboxArrivals[inboxHead] <= now) {
+			Message msg = inbox[inboxHead];
+			Node sender = inboxSenders[inboxHead];
+			inbox[inboxHead] = null;
+			inboxSenders[inboxHead] = null;
+			inboxHead++;
+			deliver(msg, sender);
+		}
+		if (inboxHead == inboxSize) {
+			inboxHead = 0;
+			inboxSize = 0;
+		}
+		super.postStep();
+	}
+
+	/**
+	 * Receives a message that is delivered in the round it arrives. Messages
+	 * with the same arrival are delivered in the order they are received.
+	 */
+	public void enqueue(Message msg, Node sender, double arrival) {
+		if (inboxSize == inbox.length) {
+			int pending = inboxSize - inboxHead;
+			int capacity = pending < inbox.length / 2 ? inbox.length : 2 * inbox.length;
+			Message[] m = new Message[capacity];
+			Node[] s = new Node[capacity];
+			double[] a = new double[capacity];
+			System.arraycopy(inbox, inboxHead, m, 0, pending);
+			System.arraycopy(inboxSenders, inboxHead, s, 0, pending);
+			System.arraycopy(inboxArrivals, inboxHead, a, 0, pending);
+			inbox = m;
+			inboxSenders = s;
+			inboxArrivals = a;
+			inboxHead = 0;
+			inboxSize = pending;
+		}
+		int i = inboxSize;
+		while (i > inboxHead && inboxArrivals[i - 1] > arrival) {
+			inbox[i] = inbox[i - 1];
+			inboxSenders[i] = inboxSenders[i - 1];
+			inboxArrivals[i] = inboxArrivals[i - 1];
+			i--;
+		}
+		inbox[i] = msg;
+		inboxSenders[i] = sender;
+		inboxArrivals[i] = arrival;
+		inboxSize++;
+	}
+
+	/**
+	 * @return The arrival of a message sent now to target, after the last
+	 * message on the same channel.
+	 */
+	private double arrival(Node target) {
+		ParallelRounds rounds = ParallelRounds.get();
+		double arrival = Global.currentTime + rounds.minDelay + (rounds.maxDelay - rounds.minDelay) * random.nextDouble();
+		int slot = slot(target.ID);
+		if (channels[slot] == target.ID) {
+			arrival = Math.max(arrival, lastArrival[slot]);
+		} else {
+			channels[slot] = target.ID;
+			channelCount++;
+		}
+		lastArrival[slot] = arrival;
+		if (channelCount > channels.length / 2) {
+			int[] oldChannels = channels;
+			double[] oldArrival = lastArrival;
+			channels = new int[2 * oldChannels.length];
+			lastArrival = new double[2 * oldArrival.length];
+			for (int i = 0; i < oldChannels.length; i++) {
+				if (oldChannels[i] != 0) {
+					int s = slot(oldChannels[i]);
+					channels[s] = oldChannels[i];
+					lastArrival[s] = oldArrival[i];
+				}
+			}
+		}
+		return arrival;
+	}
+
+	/**
+	 * @return The slot of the channel to the given ID, or the free slot where it belongs.
+	 */
+	private int slot(int id) {
+		int mask = channels.length - 1;
+		int h = id * 0x9E3779B9;
+		int slot = (h ^ (h >>> 16)) & mask;
+		while (channels[slot] != 0 && channels[slot] != id) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	@Override
+	protected void transmit(Message msg, Node target) {
+		partition.send(msg, this, (ParallelSandersNode) target, arrival(target));
+	}
+
+	@Override
+	protected void transmitDirect(Message msg, Node target) {
+		transmit(msg, target);
+	}
+
+	@Override
+	protected void startLeaveTimer(double time) {
+		leaveTime = Global.currentTime + time;
+	}
+
+	@Override
+	protected boolean wantsRequest() {
+		boolean due = requestPending;
+		requestPending = false;
+		return due;
+	}
+
+	@Override
+	protected void reportState(State from, State to) {
+		partition.stateChanged(this, from, to);
+	}
+
+	/**
+	 * Reports a change of the state deferred to the end of the round.
+	 */
+	public void reportDeferred(State from, State to) {
+		super.reportState(from, to);
+	}
+
+	@Override
+	protected void countSent(int count) {
+		messageCount += count;
+		partition.messagesSent(count);
+	}
+
+	@Override
+	protected void countRelinquish() {
+		requestRelinquishs++;
+		partition.relinquishSent();
+	}
+
+	@Override
+	protected void countCoalesced(int count) {
+		partition.messagesCoalesced(count);
+	}
+
+	@Override
+	public void init() {
+		super.init();
+		if (timeout > 0) {
+			Tools.fatalError("The ParallelSandersNode does not lose messages, MutualExclusion/Sanders/Timeout must be 0");
+		}
+		if (protocol.lazyRelease) {
+			// the node reports the lazy release to the Statistics directly
+			Tools.fatalError("The ParallelSandersNode does not support MutualExclusion/Sanders/LazyRelease");
+		}
+		ParallelRounds rounds = ParallelRounds.get();
+		random = new Random(ParallelRounds.streamSeed(rounds.seed, ID));
+		rounds.register(this);
+	}
+
+	/**
+	 * The ParallelRounds step the node, not the framework.
+	 */
+	@Override
+	public void preStep() {}
+
+	@Override
+	public void handleMessages(Inbox inbox) {}
+
+	@Override
+	public void postStep() {}
+}
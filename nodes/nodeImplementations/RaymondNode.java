@@ -0,0 +1,159 @@
+/*
+ Copyright (c) 2007, Distributed Computing Group (DCG)
+                    ETH Zurich
+                    Switzerland
+                    dcg.ethz.ch
+
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ - Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+ - Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the
+   distribution.
+
+ - Neither the name 'Sinalgo' nor the names of its contributors may be
+   used to endorse or promote products derived from this software
+   without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package projects.mutualExclusion.nodes.nodeImplementations;
+
+import java.awt.Color;
+
+import projects.mutualExclusion.nodes.messages.IntQueue;
+import projects.mutualExclusion.nodes.messages.MutexMessage;
+import projects.mutualExclusion.nodes.messages.PrivilegeMessage;
+import projects.mutualExclusion.nodes.messages.RaymondRequestMessage;
+import sinalgo.nodes.Node;
+import sinalgo.nodes.messages.Message;
+
+/**
+ * Raymond's tree-based token algorithm for mutual exclusion.
+ * <p>
+ * The nodes form a binary tree in heap order of their IDs (the parent of
+ * node i is node i/2) and every node knows the neighbor in the direction of
+ * the token. Requests travel along the tree towards the token, which travels
+ * back along the same edges, so an entry costs O(log n) messages.
+ * <p>
+ * The tree is a logical one, the messages are sent directly, independent of
+ * the connectivity model. The root (ID 1) holds the token initially.
+ */
+public class RaymondNode extends MutexNode {
+
+	/** The ID of the neighbor in the direction of the token, own ID if this node holds it. */
+	int holder;
+	/** The IDs of the requesting neighbors, own ID if this node requests the CS. */
+	IntQueue requestQueue = new IntQueue(4);
+	/** Whether a request was sent to the holder. */
+	boolean asked = false;
+
+	@Override
+	protected void deliver(Message msg, Node sender) {
+		if (!(msg instanceof MutexMessage)) {
+			return;
+		}
+		switch (((MutexMessage) msg).type) {
+			case MutexMessage.RAYMOND_REQUEST:
+				requestQueue.add(sender.ID);
+				assignPrivilege();
+				makeRequest();
+				break;
+			case MutexMessage.PRIVILEGE:
+				holder = ID;
+				assignPrivilege();
+				makeRequest();
+				break;
+		}
+	}
+
+	private void sendAndCount(Message msg, int target) {
+		countSent(1);
+		transmitDirect(msg, NodeTable.get(target));
+	}
+
+	/**
+	 * Passes the token to the first requester, or enters the CS if this node is the first.
+	 */
+	private void assignPrivilege() {
+		if (holder == ID && state != State.IN_CS && !requestQueue.isEmpty()) {
+			int next = requestQueue.poll();
+			asked = false;
+			if (next == ID) {
+				enterCS();
+			} else {
+				holder = next;
+				sendAndCount(PrivilegeMessage.INSTANCE, next);
+			}
+		}
+		updateColor();
+	}
+
+	/**
+	 * Asks the holder for the token if somebody in this subtree needs it.
+	 */
+	private void makeRequest() {
+		if (holder != ID && !requestQueue.isEmpty() && !asked) {
+			sendAndCount(RaymondRequestMessage.INSTANCE, holder);
+			asked = true;
+		}
+	}
+
+	@Override
+	protected void requestCS() {
+		setState(State.WAITING);
+		requestQueue.add(ID);
+		assignPrivilege();
+		makeRequest();
+	}
+
+	@Override
+	public void leaveCS() {
+		setState(State.NOT_IN_CS);
+		assignPrivilege();
+		makeRequest();
+	}
+
+	@Override
+	protected void updateColor() {
+		switch (state) {
+			case NOT_IN_CS:
+				setColor(holder == ID ? Color.BLACK : Color.GREEN);
+				break;
+			case WAITING:
+				setColor(Color.BLUE);
+				break;
+			case IN_CS:
+				setColor(Color.RED);
+				break;
+		}
+	}
+
+	@Override
+	public void init() {
+		holder = ID == 1 ? ID : ID / 2;
+		super.init();
+	}
+
+	@Override
+	public String toString() {
+		return "Node(" + this.ID + ") " + state + " holder: " + holder;
+	}
+}
@@ -0,0 +1,129 @@
+/*
+ Copyright (c) 2007, Distributed Computing Group (DCG)
+                    ETH Zurich
+                    Switzerland
+                    dcg.ethz.ch
+
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ - Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+ - Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the
+   distribution.
+
+ - Neither the name 'Sinalgo' nor the names of its contributors may be
+   used to endorse or promote products derived from this software
+   without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package projects.mutualExclusion.nodes.nodeImplementations;
+
+import projects.mutualExclusion.nodes.messages.MutexMessage;
+import projects.mutualExclusion.nodes.messages.ReqMessage;
+import projects.mutualExclusion.nodes.messages.YesMessage;
+import sinalgo.nodes.Node;
+import sinalgo.nodes.messages.Message;
+
+/**
+ * Ricart-Agrawala algorithm for mutual exclusion.
+ * <p>
+ * A node sends a timestamped request to all other nodes and enters the CS
+ * once all of them replied. A node defers its reply while it is in the CS or
+ * while its own request is older. An entry costs 2(n-1) messages.
+ * <p>
+ * The algorithm assumes a complete network, so the messages are sent
+ * directly, independent of the connectivity model.
+ */
+public class RicartAgrawalaNode extends MutexNode {
+
+	/** Lamport clock. */
+	int clock = 0;
+	int myTS;
+	/** The number of replies still missing for the current request. */
+	int missingReplies;
+	/** Whether the reply to a node is deferred, by ID. */
+	boolean[] deferred = new boolean[0];
+
+	@Override
+	protected void deliver(Message msg, Node sender) {
+		if (!(msg instanceof MutexMessage)) {
+			return;
+		}
+		switch (((MutexMessage) msg).type) {
+			case MutexMessage.REQ:
+				handleRequest((ReqMessage) msg, sender);
+				break;
+			case MutexMessage.YES:
+				missingReplies--;
+				if (state == State.WAITING && missingReplies == 0) {
+					enterCS();
+				}
+				break;
+		}
+	}
+
+	private void handleRequest(ReqMessage msg, Node sender) {
+		clock = Math.max(clock, msg.timestamp) + 1;
+		boolean mine = state == State.IN_CS ||
+				(state == State.WAITING && (myTS < msg.timestamp || (myTS == msg.timestamp && ID < sender.ID)));
+		if (mine) {
+			if (sender.ID >= deferred.length) {
+				boolean[] grown = new boolean[Math.max(2 * deferred.length, sender.ID + 1)];
+				System.arraycopy(deferred, 0, grown, 0, deferred.length);
+				deferred = grown;
+			}
+			deferred[sender.ID] = true;
+		} else {
+			countSent(1);
+			transmitDirect(YesMessage.INSTANCE, sender);
+		}
+	}
+
+	@Override
+	protected void requestCS() {
+		setState(State.WAITING);
+		myTS = ++clock;
+		missingReplies = sendToAllOthers(new ReqMessage(myTS, 0, ReqMessage.EXCLUSIVE));
+		if (missingReplies == 0) {
+			enterCS();
+		} else {
+			updateColor();
+		}
+	}
+
+	@Override
+	public void leaveCS() {
+		setState(State.NOT_IN_CS);
+		for (int id = 0; id < deferred.length; id++) {
+			if (deferred[id]) {
+				deferred[id] = false;
+				countSent(1);
+				transmitDirect(YesMessage.INSTANCE, NodeTable.get(id));
+			}
+		}
+		updateColor();
+	}
+
+	@Override
+	public String toString() {
+		return "Node(" + this.ID + ") " + state + (state == State.WAITING ? " (missing: " + missingReplies + "; ts: " + myTS + ")" : "");
+	}
+}
@@ -36,212 +36,368 @@
 */
 package projects.mutualExclusion.nodes.nodeImplementations;
 
-import java.util.Comparator;
-import java.util.PriorityQueue;
-
-import sinalgo.configuration.Configuration;
-
 import java.awt.Color;
 import java.awt.Graphics;
+import java.util.Arrays;
 import java.util.Iterator;
 
+import projects.mutualExclusion.Statistics;
+import projects.mutualExclusion.Workload;
+import projects.mutualExclusion.lockService.VoteProtocol;
+import projects.mutualExclusion.models.connectivityModels.QuorumSystem;
+import projects.mutualExclusion.nodes.messages.CompositeMessage;
 import projects.mutualExclusion.nodes.messages.InqMessage;
+import projects.mutualExclusion.nodes.messages.MutexMessage;
+import projects.mutualExclusion.nodes.messages.PassMessage;
+import projects.mutualExclusion.nodes.messages.PassedMessage;
 import projects.mutualExclusion.nodes.messages.ReleaseMessage;
 import projects.mutualExclusion.nodes.messages.RelinquishMessage;
 import projects.mutualExclusion.nodes.messages.ReqMessage;
-import projects.mutualExclusion.nodes.messages.Request;
-import projects.mutualExclusion.nodes.messages.RequestComparator;
+import projects.mutualExclusion.nodes.messages.RequestQueue;
+import projects.mutualExclusion.nodes.messages.TransferMessage;
 import projects.mutualExclusion.nodes.messages.YesMessage;
-import projects.mutualExclusion.nodes.timers.leaveCSTimer;
+import projects.mutualExclusion.nodes.timers.timeoutTimer;
+import sinalgo.configuration.Configuration;
 import sinalgo.configuration.CorruptConfigurationEntryException;
-import sinalgo.configuration.WrongConfigurationException;
 import sinalgo.gui.transformation.PositionTransformation;
+import sinalgo.models.ConnectivityModel;
 import sinalgo.nodes.Node;
 import sinalgo.nodes.edges.Edge;
-import sinalgo.nodes.messages.Inbox;
 import sinalgo.nodes.messages.Message;
-import sinalgo.tools.statistics.Distribution;
+import sinalgo.runtime.Global;
+import sinalgo.tools.Tools;
 
 /**
  * Sanders87 Algorithm for Mutual Exclusion
+ * <p>
+ * The node manages the independent locks of MutualExclusion/CriticalSection/Resources.
+ * Each request names one lock, and the voting state is kept per lock in
+ * arrays indexed by the lock.
+ * <p>
+ * A request is either exclusive (a writer) or shared (a reader), see
+ * MutualExclusion/CriticalSection/ReadRatio. A node gives its vote for a
+ * lock to one writer or to any number of readers. A reader joins the
+ * readers holding the vote only if no deferred request is older, so
+ * writers do not starve. Since all quorums intersect, a writer excludes
+ * every other node, while readers share the CS.
+ * <p>
+ * With MutualExclusion/Sanders/Timeout, the node recovers from lost messages
+ * (see the FaultyDelivery reliability model). The votes and releases carry
+ * the timestamp of the request, such that duplicates can be told apart. A
+ * request without a new vote for a timeout resends its request to the
+ * voters that did not answer, and a voter resends its vote if the request
+ * already holds it. If the resent request is deferred, the voter reminds the
+ * holders of its vote by resending the vote (or the inquiry), and a holder
+ * gives back a vote it does not use for its current request. The resends
+ * back off exponentially up to MAX_BACKOFF timeouts, since under load a
+ * request may wait long without any loss. This relies on FIFO channels like
+ * the protocol itself.
+ * <p>
+ * With MutualExclusion/Sanders/DelayOptimal, the holder of a vote passes it
+ * on to the next request itself when it leaves the CS (see
+ * {@link VoteProtocol}), which halves the synchronization delay. It cannot
+ * be combined with a timeout.
+ * <p>
+ * With MutualExclusion/Sanders/LazyRelease, a node keeps the votes of an
+ * exclusive request after leaving the CS until a voter asks for them, such
+ * that a repeated request for the same lock enters without a message (see
+ * {@link VoteProtocol}). It cannot be combined with a timeout or the
+ * delay-optimal mode.
+ * <p>
+ * The protocol itself is the {@link VoteProtocol}, which also runs outside
+ * the simulation. The node hands it the received messages and sends, counts
+ * and coalesces the messages it produces.
  */
-public class SandersNode extends Node {
-	public enum State {
-	    NOT_IN_CS, WAITING, IN_CS 
-	}
+public class SandersNode extends MutexNode {
 
-	public int messageCount = 0;
 	public int reliquishMessageCount = 0; 
 	
-	int clock = 0;
-	int votes = 0;
-	boolean hasVoted = false;
-	boolean inquired = false;
-	Node candidate;
-	int candidateTS;
-	int myTS;
-	public State state = State.NOT_IN_CS;
-	PriorityQueue<Request> deferedQueue;
+	/** The vote protocol, which sends its messages through this node. */
+	VoteProtocol protocol;
+	/**
+	 * Whether the messages to the same node in the same step are sent as one
+	 * composite message. Set with MutualExclusion/Sanders/Coalesce.
+	 */
+	boolean coalesce = false;
+	/** The messages waiting for the end of the step, the i-th goes to outboxTargets[i]. */
+	MutexMessage[] outbox = new MutexMessage[8];
+	Node[] outboxTargets = new Node[8];
+	int outboxSize = 0;
+	/** The outbox sorted by target, see flushOutbox. */
+	long[] outboxOrder = new long[8];
+	/**
+	 * Whether the releases in the outbox are kept until the next request,
+	 * set when the node left the CS. Only the releases to nodes that get no
+	 * other message in the step are kept, such that the channels stay FIFO.
+	 */
+	boolean holdOutbox = false;
+	/**
+	 * The rounds without a vote after which a request is resent, and after
+	 * which a voter reminds the holder of its vote again, 0 if messages are
+	 * never lost. Set with MutualExclusion/Sanders/Timeout.
+	 */
+	double timeout = 0;
 	
+	/**
+	 * Connects the vote protocol to the simulation.
+	 */
+	private class Host implements VoteProtocol.Host {
+		public void send(int to, int type, int timestamp, int clock, int lock, int mode) {
+			sendAndCount(message(type, timestamp, clock, lock, mode), NodeTable.get(to));
+		}
+
+		public void acquired() {
+			enterCS();
+		}
+
+		public double now() {
+			return Global.currentTime;
+		}
+
+		public void recoverySent() {
+			Statistics.recoveryMessageSent();
+		}
+
+		public void keptVoteReturned(double waited) {
+			Statistics.keptVoteReturned(waited);
+		}
+	}
+
 	@Override
-	public void handleMessages(Inbox inbox) {
-		while(inbox.hasNext()) {
-			Message msg = inbox.next();
-			Node sender = inbox.getSender();
-			if (msg instanceof ReqMessage) {
-				handleReq((ReqMessage) msg, sender);
-			} else if (msg instanceof YesMessage) {
-				handleYes((YesMessage) msg, sender);
-			} else if (msg instanceof InqMessage) {
-				handleInq((InqMessage) msg, sender);
-			} else if (msg instanceof RelinquishMessage) {
-				handleRelinquish((RelinquishMessage) msg, sender);
-			} else if (msg instanceof ReleaseMessage) {
-				handleRelease((ReleaseMessage) msg, sender);
-			}
+	protected void deliver(Message msg, Node sender) {
+		if (!(msg instanceof MutexMessage)) {
+			throw new IllegalArgumentException("A SandersNode cannot handle the message " + msg);
+		}
+		switch (((MutexMessage) msg).type) {
+			case MutexMessage.COMPOSITE:
+				MutexMessage[] parts = ((CompositeMessage) msg).parts;
+				for (int i = 0; i < parts.length; i++) {
+					deliver(parts[i], sender);
+				}
+				return;
+			case MutexMessage.REQ:
+				ReqMessage req = (ReqMessage) msg;
+				protocol.receive(sender.ID, VoteProtocol.REQ, req.timestamp, 0, req.lock, req.mode);
+				break;
+			case MutexMessage.YES:
+				YesMessage yes = (YesMessage) msg;
+				protocol.receive(sender.ID, VoteProtocol.YES, yes.timestamp, yes.clock, yes.lock, yes.grant);
+				break;
+			case MutexMessage.INQ:
+				InqMessage inq = (InqMessage) msg;
+				protocol.receive(sender.ID, VoteProtocol.INQ, inq.timestamp, inq.clock, inq.lock, inq.mode);
+				break;
+			case MutexMessage.RELINQUISH:
+				RelinquishMessage relinquish = (RelinquishMessage) msg;
+				protocol.receive(sender.ID, VoteProtocol.RELINQUISH, relinquish.timestamp, relinquish.clock, relinquish.lock,
+						relinquish.grant);
+				break;
+			case MutexMessage.RELEASE:
+				ReleaseMessage release = (ReleaseMessage) msg;
+				protocol.receive(sender.ID, VoteProtocol.RELEASE, release.timestamp, release.clock, release.lock, release.mode);
+				break;
+			case MutexMessage.TRANSFER:
+				TransferMessage transfer = (TransferMessage) msg;
+				protocol.receive(sender.ID, VoteProtocol.TRANSFER, transfer.timestamp, transfer.clock, transfer.lock, transfer.next);
+				break;
+			case MutexMessage.PASS:
+				PassMessage pass = (PassMessage) msg;
+				protocol.receive(sender.ID, VoteProtocol.PASS, -1, pass.clock, pass.lock, pass.voter);
+				break;
+			case MutexMessage.PASSED:
+				PassedMessage passed = (PassedMessage) msg;
+				protocol.receive(sender.ID, VoteProtocol.PASSED, -1, passed.clock, passed.lock, passed.next);
+				break;
+			default:
+				throw new IllegalArgumentException("A SandersNode cannot handle the message type " + ((MutexMessage) msg).type);
+		}
+		updateColor();
+	}
+
+	/**
+	 * @return A message of the vote protocol, the shared instance if it
+	 * carries neither a clock, nor a timestamp, nor another lock than 0.
+	 */
+	private static Message message(int type, int timestamp, int clock, int lock, int mode) {
+		switch (type) {
+			case VoteProtocol.REQ:
+				return new ReqMessage(timestamp, lock, mode);
+			case VoteProtocol.YES:
+				if (clock == 0 && lock == 0 && timestamp < 0 && mode == 0) {
+					return YesMessage.INSTANCE;
+				}
+				return new YesMessage(clock, lock, timestamp, mode);
+			case VoteProtocol.INQ:
+				return new InqMessage(timestamp, clock, lock, mode);
+			case VoteProtocol.RELINQUISH:
+				return new RelinquishMessage(timestamp, clock, lock, mode);
+			case VoteProtocol.TRANSFER:
+				return new TransferMessage(timestamp, clock, lock, mode);
+			case VoteProtocol.PASS:
+				return new PassMessage(clock, lock, mode);
+			case VoteProtocol.PASSED:
+				return new PassedMessage(clock, lock, mode);
+			case VoteProtocol.RELEASE:
+				if (clock == 0 && lock == 0 && timestamp < 0 && mode == 0) {
+					return ReleaseMessage.INSTANCE;
+				}
+				return new ReleaseMessage(clock, lock, timestamp, mode);
+			default:
+				throw new IllegalArgumentException("The vote protocol has no message type " + type);
 		}
 	}
 
 	private void sendAndCount(Message msg, Node target) {
 		if (msg instanceof RelinquishMessage) {
 			reliquishMessageCount += 1;
+			countRelinquish();
+		} else if (msg instanceof InqMessage && ((InqMessage) msg).mode == InqMessage.LAZY) {
+			Statistics.lazyInquirySent();
+		}
+		if (coalesce && !Global.isAsynchronousMode) {
+			addToOutbox((MutexMessage) msg, target);
+			return;
 		}
-		messageCount += 1;
-		send(msg, target);
+		countSent(1);
+		transmit(msg, target);
 	}
 
-	private void broadcastAndCount(Message msg) {
-		messageCount += outgoingConnections.size();
-		broadcast(msg);
+	private void addToOutbox(MutexMessage msg, Node target) {
+		if (outboxSize == outbox.length) {
+			MutexMessage[] m = new MutexMessage[2 * outboxSize];
+			Node[] t = new Node[2 * outboxSize];
+			System.arraycopy(outbox, 0, m, 0, outboxSize);
+			System.arraycopy(outboxTargets, 0, t, 0, outboxSize);
+			outbox = m;
+			outboxTargets = t;
+			outboxOrder = new long[2 * outboxSize];
+		}
+		outbox[outboxSize] = msg;
+		outboxTargets[outboxSize] = target;
+		outboxSize++;
 	}
-	
-	private void handleReq(ReqMessage msg, Node sender) {
-		if (!hasVoted) {
-			Message reply = new YesMessage();
-			sendAndCount(reply, sender);
-			hasVoted = true;
-			candidate = sender;
-			candidateTS = msg.timestamp;
-		} else {
-			deferedQueue.add(new Request(sender, msg.timestamp));
-			if (!inquired && 
-				(
-				 (msg.timestamp < candidateTS) || 
-				 (msg.timestamp == candidateTS && sender.ID < candidate.ID))
-				) {
-				Message reply = new InqMessage(candidateTS);
-				sendAndCount(reply, candidate);
-				inquired = true;
+
+	/**
+	 * Sends the outbox, the messages to the same node as one composite
+	 * message in the order they were added. The messages are grouped by
+	 * sorting them by target ID and index, which keeps a broadcast to a
+	 * large quorum at O(n log n).
+	 * @param holdReleases Whether the groups that only consist of releases
+	 * stay in the outbox.
+	 */
+	private void flushOutbox(boolean holdReleases) {
+		for (int i = 0; i < outboxSize; i++) {
+			outboxOrder[i] = ((long) outboxTargets[i].ID << 32) | i;
+		}
+		Arrays.sort(outboxOrder, 0, outboxSize);
+		for (int start = 0, end; start < outboxSize; start = end) {
+			int first = (int) outboxOrder[start];
+			Node target = outboxTargets[first];
+			boolean releases = true;
+			for (end = start; end < outboxSize && outboxTargets[(int) outboxOrder[end]] == target; end++) {
+				releases &= outbox[(int) outboxOrder[end]].type == MutexMessage.RELEASE;
+			}
+			if (holdReleases && releases) {
+				continue;
+			}
+			int parts = end - start;
+			if (parts == 1) {
+				transmit(outbox[first], target);
+			} else {
+				MutexMessage[] composite = new MutexMessage[parts];
+				for (int k = 0; k < parts; k++) {
+					composite[k] = outbox[(int) outboxOrder[start + k]];
+				}
+				transmit(new CompositeMessage(composite), target);
+				countCoalesced(parts - 1);
+			}
+			for (int k = start; k < end; k++) {
+				outbox[(int) outboxOrder[k]] = null;
 			}
+			countSent(1);
 		}
-		updateColor();		
+		// keep the held releases in the order they were added
+		int kept = 0;
+		for (int i = 0; i < outboxSize; i++) {
+			if (outbox[i] != null) {
+				outbox[kept] = outbox[i];
+				outboxTargets[kept] = outboxTargets[i];
+				kept++;
+			}
+		}
+		for (int i = kept; i < outboxSize; i++) {
+			outbox[i] = null;
+			outboxTargets[i] = null;
+		}
+		outboxSize = kept;
 	}
-	
-	private void handleRelinquish(RelinquishMessage msg, Node sender) {
-		deferedQueue.add(new Request(sender, msg.timestamp));
-		castVote();
+
+	/**
+	 * Called by the timeoutTimer. Resends the current request to the voters
+	 * that did not answer.
+	 */
+	public void timeout() {
+		protocol.timeout();
 	}
 	
-	private void handleRelease(ReleaseMessage msg, Node sender) {
-		castVote();
+	@Override
+	protected void requestCS() {
+		setState(State.WAITING);
+		if (Global.isAsynchronousMode) {
+			// there is no postStep counting the rounds
+			protocol.setRound((int) Global.currentTime);
+		}
+		protocol.request(resource, shared, quorum());
+		updateColor();		
 	}
 
-	private void castVote() {
-		Request req = deferedQueue.poll();
-		if (req != null) {
-			Message reply = new YesMessage();
-			sendAndCount(reply, req.requester);
-			candidate = req.requester;
-			candidateTS = req.timestamp; 			
-		} else {
-			hasVoted = false;
+	/**
+	 * @return The IDs of the nodes asked for their vote. If the connectivity
+	 * model is no quorum system, the quorum consists of all neighbors.
+	 */
+	private int[] quorum() {
+		ConnectivityModel model = getConnectivityModel();
+		if (model instanceof QuorumSystem) {
+			Node[] quorum = ((QuorumSystem) model).getQuorum(this);
+			int[] ids = new int[quorum.length];
+			for (int i = 0; i < quorum.length; i++) {
+				ids[i] = quorum[i].ID;
+			}
+			return ids;
 		}
-		inquired = false;
-		updateColor();
-	}
-	
-	private void handleYes(YesMessage msg, Node sender) {
-		votes++;
-		if (votes == outgoingConnections.size()) {
-			state = State.IN_CS;
-			updateColor();
-			leaveCSTimer timer = new leaveCSTimer(); 
-			timer.startRelative(timeToLeaveCS(), this);
+		int[] ids = new int[outgoingConnections.size()];
+		int i = 0;
+		Iterator<Edge> edgeIter = outgoingConnections.iterator();
+		while (edgeIter.hasNext()) {
+			ids[i++] = edgeIter.next().endNode.ID;
 		}
+		return ids;
 	}
 	
-	private void handleInq(InqMessage msg, Node sender) {
-		if (state == State.WAITING && msg.timestamp == myTS) {
-			Message reply = new RelinquishMessage(myTS);
-			sendAndCount(reply, sender);
-			votes--;
+	@Override
+	protected void enterCS() {
+		if (protocol.retransmitted() >= 0) {
+			Statistics.recovered(Global.currentTime - protocol.retransmitted());
 		}
-		updateColor();
-	}
-	
-	private void enterCS() {
-		state = State.WAITING;
-		requestVotes();
-		updateColor();		
+		if (protocol.saved() > 0) {
+			Statistics.votesReused(protocol.saved());
+		}
+		super.enterCS();
 	}
-	
+
+	@Override
 	public void leaveCS() {
-		state = State.NOT_IN_CS;
-		releaseVotes();
+		setState(State.NOT_IN_CS);
+		// a new request in the next step can join the releases
+		holdOutbox = coalesce;
+		protocol.release();
 		updateColor();
 	}
-	
-	private void requestVotes() {
-		myTS = clock;		
-		Message msg = new ReqMessage(myTS);		
-		broadcastAndCount(msg);
-	}
-	
-	private void releaseVotes() {
-		votes = 0;		
-		Message msg = new ReleaseMessage();
-		broadcastAndCount(msg);
-	}
 
 	@Override
-	public void preStep() {
-		if (state == State.NOT_IN_CS && wantToEnterCS()) {
-			enterCS();
-		}
-	}
-
-	private boolean wantToEnterCS() {
-		String namespace = "MutualExclusion/CriticalSection/Enter";
-		Distribution dist;
-		double value;
-        try {
-	        dist = Distribution.getDistributionFromConfigFile(namespace + "/Distribution");
-	        value = dist.nextSample();
-        } catch (CorruptConfigurationEntryException e) {
-        	value = 0;
-	        e.printStackTrace();
-        }
-		try {
-	        return value <= Configuration.getDoubleParameter(namespace + "/Threshold");
-        } catch (CorruptConfigurationEntryException e) {
-	        e.printStackTrace();
-	        return false;
-        }
-	}
-
-	private double timeToLeaveCS() {
-		String namespace = "MutualExclusion/CriticalSection/Leave";
-		Distribution dist;
-        try {
-	        dist = Distribution.getDistributionFromConfigFile(namespace + "/Distribution");
-	        return dist.nextSample();
-        } catch (CorruptConfigurationEntryException e) {
-	        e.printStackTrace();
-	        return 3;
-        }
-	}
-		
-	private void updateColor() {
+	protected void updateColor() {
+		boolean hasVoted = protocol.holderCount(resource) != 0;
+		boolean inquired = hasVoted && protocol.holderInquired(resource, 0);
 		switch (state) {
 			case NOT_IN_CS:
 				if (inquired) {
@@ -267,17 +423,19 @@ public class SandersNode extends Node {
 
 	@Override
 	public void draw(Graphics g, PositionTransformation pt, boolean highlight) {
+		boolean hasVoted = protocol.holderCount(resource) != 0;
+		int candidate = hasVoted ? RequestQueue.nodeId(protocol.holder(resource, 0)) : 0;
 		String text;
 		switch (state) {
 			case WAITING: 
-				text = Integer.toString(votes);
+				text = Integer.toString(protocol.votes());
 				if (hasVoted) {
-					text += " (" + candidate.ID + ")";
+					text += " (" + candidate + ")";
 				}				
 				super.drawNodeAsSquareWithText(g, pt, highlight, text, 25, Color.WHITE);
 				break;
 			case NOT_IN_CS:
-				text = hasVoted ? ((inquired ? "INQ" : "Y") + " (" + candidate.ID + ")") : "NO";
+				text = hasVoted ? ((protocol.holderInquired(resource, 0) ? "INQ" : "Y") + " (" + candidate + ")") : "NO";
 				super.drawNodeAsSquareWithText(g, pt, highlight, text, 20, Color.WHITE);
 				break;
 			default:
@@ -288,28 +446,77 @@ public class SandersNode extends Node {
 
 	@Override
 	public void init() {
-		Comparator<Request> comparator = new RequestComparator();
-		deferedQueue = new PriorityQueue<Request>(10, comparator);
-		updateColor();
+		boolean lamportClock = false;
+		boolean delayOptimal = false;
+		boolean lazyRelease = false;
+		try {
+			if (Configuration.hasParameter("MutualExclusion/Sanders/Coalesce")) {
+				coalesce = Configuration.getBooleanParameter("MutualExclusion/Sanders/Coalesce");
+			}
+			if (Configuration.hasParameter("MutualExclusion/Sanders/Timeout")) {
+				timeout = Configuration.getDoubleParameter("MutualExclusion/Sanders/Timeout");
+			}
+			if (Configuration.hasParameter("MutualExclusion/Sanders/DelayOptimal")) {
+				delayOptimal = Configuration.getBooleanParameter("MutualExclusion/Sanders/DelayOptimal");
+			}
+			if (Configuration.hasParameter("MutualExclusion/Sanders/LazyRelease")) {
+				lazyRelease = Configuration.getBooleanParameter("MutualExclusion/Sanders/LazyRelease");
+			}
+			if (Configuration.hasParameter("MutualExclusion/Sanders/Clock")) {
+				String mode = Configuration.getStringParameter("MutualExclusion/Sanders/Clock");
+				if (mode.equalsIgnoreCase("Lamport")) {
+					lamportClock = true;
+				} else if (!mode.equalsIgnoreCase("Round")) {
+					Tools.fatalError("MutualExclusion/Sanders/Clock must be Round or Lamport, not " + mode);
+				}
+			}
+		} catch (CorruptConfigurationEntryException e) {
+			Tools.fatalError(e.getMessage());
+		}
+		if (delayOptimal && timeout > 0) {
+			Tools.fatalError("MutualExclusion/Sanders/DelayOptimal does not recover from lost messages, set no Timeout");
+		}
+		if (lazyRelease && (timeout > 0 || delayOptimal)) {
+			Tools.fatalError("MutualExclusion/Sanders/LazyRelease can neither be combined with a Timeout nor with DelayOptimal");
+		}
+		protocol = new VoteProtocol(ID, Workload.get().resources(), lamportClock, timeout, delayOptimal, lazyRelease,
+				new Host());
+		if (timeout > 0) {
+			new timeoutTimer(timeout).startRelative(timeout, this);
+		}
+		super.init();
 	}
 
 	@Override
-	public void neighborhoodChange() {}
+	public void preStep() {
+		super.preStep();
+		if (holdOutbox) {
+			holdOutbox = false;
+			flushOutbox(false);
+		}
+	}
 
 	@Override
 	public void postStep() {
-		clock++;
+		protocol.nextRound();
+		if (outboxSize > 0) {
+			// the votes and inquiries of the node as a voter are not held
+			flushOutbox(holdOutbox);
+		}
 	}
 	
 	@Override
 	public String toString() {
 		String s = "Node(" + this.ID + ") " + state;
 		if (state == State.WAITING) {
-			s += " (votes: " + votes + "; ts: " + myTS + ")";
+			s += " (votes: " + protocol.votes() + "; ts: " + protocol.timestamp() + ")";
+		} else if (protocol.kept()) {
+			s += " (votes kept: " + protocol.votes() + "; ts: " + protocol.timestamp() + ")";
 		}		
-		if (hasVoted) {
-			s += " vote: (" + candidate.ID + ", ts: " + candidateTS;
-			if (inquired) {
+		for (int i = 0; i < protocol.holderCount(resource); i++) {
+			long holder = protocol.holder(resource, i);
+			s += " vote: (" + RequestQueue.nodeId(holder) + ", ts: " + RequestQueue.timestamp(holder);
+			if (protocol.holderInquired(resource, i)) {
 				s += ", inquired";
 			}
 			s += ")";
@@ -324,7 +531,4 @@ public class SandersNode extends Node {
 		return s + "]";
 
 	}
-
-	@Override
-	public void checkRequirements() throws WrongConfigurationException {}
 }
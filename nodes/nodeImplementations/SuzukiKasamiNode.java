@@ -0,0 +1,178 @@
+/*
+ Copyright (c) 2007, Distributed Computing Group (DCG)
+                    ETH Zurich
+                    Switzerland
+                    dcg.ethz.ch
+
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ - Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+ - Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the
+   distribution.
+
+ - Neither the name 'Sinalgo' nor the names of its contributors may be
+   used to endorse or promote products derived from this software
+   without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package projects.mutualExclusion.nodes.nodeImplementations;
+
+import java.awt.Color;
+
+import projects.mutualExclusion.nodes.messages.MutexMessage;
+import projects.mutualExclusion.nodes.messages.SKRequestMessage;
+import projects.mutualExclusion.nodes.messages.SKTokenMessage;
+import sinalgo.nodes.Node;
+import sinalgo.nodes.messages.Message;
+
+/**
+ * Suzuki-Kasami broadcast algorithm for mutual exclusion.
+ * <p>
+ * A node needs the single token to enter the CS. It broadcasts numbered
+ * requests to all nodes, the holder of the token passes it on when it leaves
+ * the CS. An entry costs n messages, or none if the node still holds the token.
+ * <p>
+ * The algorithm assumes a complete network, so the messages are sent
+ * directly, independent of the connectivity model. The node with ID 1 holds
+ * the token initially.
+ */
+public class SuzukiKasamiNode extends MutexNode {
+
+	/** The highest sequence number of a request of each node, by ID. */
+	int[] requested = new int[0];
+	/** The token, null if this node does not hold it. */
+	SKTokenMessage token;
+
+	@Override
+	protected void deliver(Message msg, Node sender) {
+		if (!(msg instanceof MutexMessage)) {
+			return;
+		}
+		switch (((MutexMessage) msg).type) {
+			case MutexMessage.SK_REQUEST:
+				handleRequest((SKRequestMessage) msg, sender);
+				break;
+			case MutexMessage.SK_TOKEN:
+				handleToken((SKTokenMessage) msg);
+				break;
+		}
+	}
+
+	private void sendAndCount(Message msg, Node target) {
+		countSent(1);
+		transmitDirect(msg, target);
+	}
+
+	private void handleRequest(SKRequestMessage msg, Node sender) {
+		ensureCapacity(sender.ID);
+		requested[sender.ID] = Math.max(requested[sender.ID], msg.sequence);
+		if (token != null && state == State.NOT_IN_CS) {
+			token.ensureCapacity(sender.ID);
+			if (requested[sender.ID] == token.granted[sender.ID] + 1) {
+				SKTokenMessage t = token;
+				token = null;
+				sendAndCount(t, sender);
+				updateColor();
+			}
+		}
+	}
+
+	private void handleToken(SKTokenMessage msg) {
+		token = msg;
+		if (state == State.WAITING) {
+			enterCS();
+		}
+	}
+
+	@Override
+	protected void requestCS() {
+		setState(State.WAITING);
+		if (token != null) {
+			enterCS();
+			return;
+		}
+		int maxID = NodeTable.maxID();
+		ensureCapacity(maxID);
+		requested[ID]++;
+		sendToAllOthers(new SKRequestMessage(requested[ID]));
+		updateColor();
+	}
+
+	@Override
+	public void leaveCS() {
+		setState(State.NOT_IN_CS);
+		int maxID = NodeTable.maxID();
+		ensureCapacity(maxID);
+		token.ensureCapacity(maxID);
+		token.granted[ID] = requested[ID];
+		for (int id = 1; id <= maxID; id++) {
+			if (!token.queued[id] && requested[id] == token.granted[id] + 1) {
+				token.queue.add(id);
+				token.queued[id] = true;
+			}
+		}
+		if (!token.queue.isEmpty()) {
+			int next = token.queue.poll();
+			token.queued[next] = false;
+			SKTokenMessage t = token;
+			token = null;
+			sendAndCount(t, NodeTable.get(next));
+		}
+		updateColor();
+	}
+
+	private void ensureCapacity(int maxID) {
+		if (maxID >= requested.length) {
+			int[] r = new int[maxID + 1];
+			System.arraycopy(requested, 0, r, 0, requested.length);
+			requested = r;
+		}
+	}
+
+	@Override
+	protected void updateColor() {
+		switch (state) {
+			case NOT_IN_CS:
+				setColor(token != null ? Color.BLACK : Color.GREEN);
+				break;
+			case WAITING:
+				setColor(Color.BLUE);
+				break;
+			case IN_CS:
+				setColor(Color.RED);
+				break;
+		}
+	}
+
+	@Override
+	public void init() {
+		if (ID == 1) {
+			token = new SKTokenMessage(ID);
+		}
+		super.init();
+	}
+
+	@Override
+	public String toString() {
+		return "Node(" + this.ID + ") " + state + (token != null ? " token" : "");
+	}
+}
@@ -1,6 +1,6 @@
 package projects.mutualExclusion.nodes.timers;
 
-import projects.mutualExclusion.nodes.nodeImplementations.SandersNode;
+import projects.mutualExclusion.nodes.nodeImplementations.MutexNode;
 import sinalgo.nodes.timers.Timer;
 
 /**
@@ -15,6 +15,6 @@ public class leaveCSTimer extends Timer {
 	
 	@Override
 	public void fire() {
-		((SandersNode) this.node).leaveCS();
+		((MutexNode) this.node).leaveCS();
 	}
 }